@@ -0,0 +1,368 @@
+package com.qtech.forgemods.updates.harness;
+
+import com.qtech.forgemods.updates.AbstractUpdater;
+import com.qtech.forgemods.updates.UpdateCheckEngine;
+import com.qtech.forgemods.updates.download.DownloadScheduler;
+import com.qtech.forgemods.updates.download.FileDownload;
+import com.qtech.forgemods.updates.harness.FaultServer.Fault;
+import com.qtech.forgemods.updates.manifest.ManifestCache;
+import com.qtech.forgemods.updates.net.CircuitBreakingHttpClient;
+import com.qtech.forgemods.updates.net.HttpClients;
+import com.qtech.forgemods.updates.net.RateLimitingHttpClient;
+import com.qtech.forgemods.updates.net.UrlConnectionHttpClient;
+import net.minecraftforge.fml.loading.FMLPaths;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fault injection scenarios for the update checker and downloader, played against a {@link FaultServer}.
+ * Every scenario scripts faults for its own mods, and asserts:
+ * <ul>
+ *     <li>the update status of every check, and whether every download succeeds;</li>
+ *     <li>that checks and downloads finish within a bound derived from the client timeouts;</li>
+ *     <li>that the (simulated) main thread ticks stay short while checks are running;</li>
+ *     <li>that every response was closed, and no thread is left blocked on a socket afterwards.</li>
+ * </ul>
+ * Prints a line per scenario, and exits with status 1 if any scenario failed.
+ * Pass scenario names as arguments to only run those.
+ *
+ * @author Qboi123
+ */
+public final class FaultHarness {
+    private static final int CONNECT_TIMEOUT = 500;
+    private static final int READ_TIMEOUT = 1000;
+    private static final long MANIFEST_TIMEOUT = 3000;
+    private static final long TICK = 50;
+    private static final long SLACK = 750;
+    private static final long GIVE_UP = TimeUnit.SECONDS.toMillis(60);
+    /**
+     * Finished manifest fetches are shared for 5 seconds, later checks of the same url wait this long to reach the server.
+     */
+    private static final long SHARE_WINDOW = 5100;
+    private static final String CURRENT_VERSION = "2.0.1-beta1";
+    private static final String LATEST_VERSION = "2.0.2-beta1";
+    private static final int JAR_SIZE = 256 * 1024;
+
+    private final FaultServer server;
+    private final File downloadDir;
+    private final byte[] jar = new byte[JAR_SIZE];
+    private final String jarHash;
+    private final List<String> failures = new ArrayList<>();
+    private final Set<Thread> baseline = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private TrackingHttpClient client;
+    private int scenarioFailures;
+
+    private FaultHarness(FaultServer server, File downloadDir) {
+        this.server = server;
+        this.downloadDir = downloadDir;
+        new Random(JAR_SIZE).nextBytes(jar);
+        this.jarHash = StandInServer.sha256(jar);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path gameDir = Files.createTempDirectory("qfm-faulttest");
+        FMLPaths.loadAbsolutePaths(gameDir);
+        ManifestCache.get().setTimeout(MANIFEST_TIMEOUT);
+        File downloadDir = gameDir.resolve("downloads").toFile();
+        if (!downloadDir.mkdirs()) {
+            throw new IllegalStateException("Couldn't create the download directory: " + downloadDir);
+        }
+
+        boolean passed;
+        try (FaultServer server = new FaultServer()) {
+            server.start();
+            server.setStallTime(GIVE_UP);
+            passed = new FaultHarness(server, downloadDir).run(args);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run(String[] only) throws Exception {
+        List<Scenario> scenarios = new ArrayList<>();
+        long timeoutBound = 2 * READ_TIMEOUT + SLACK;
+
+        // Update checks.
+        scenarios.add(check("ok", 1, new Fault[]{Fault.NONE}, AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE, SLACK));
+        scenarios.add(check("stall", 1, new Fault[]{Fault.STALL}, AbstractUpdater.UpdateStatus.OFFLINE, timeoutBound));
+        scenarios.add(check("stall-body", 1, new Fault[]{Fault.STALL_BODY}, AbstractUpdater.UpdateStatus.OFFLINE, timeoutBound));
+        scenarios.add(check("trickle", 1, new Fault[]{Fault.TRICKLE}, AbstractUpdater.UpdateStatus.OFFLINE, MANIFEST_TIMEOUT + SLACK));
+        // The JDK retries a request once when the connection is reset, after that the circuit of the host opens.
+        scenarios.add(check("reset", 4, new Fault[]{Fault.RESET, Fault.RESET}, AbstractUpdater.UpdateStatus.OFFLINE, SLACK)
+                .then(AbstractUpdater.UpdateStatus.OFFLINE, SLACK));
+        scenarios.add(check("truncate", 1, new Fault[]{Fault.TRUNCATE}, AbstractUpdater.UpdateStatus.OFFLINE, SLACK)
+                .then(AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE, SLACK));
+        scenarios.add(check("short-length", 1, new Fault[]{Fault.SHORT_LENGTH}, AbstractUpdater.UpdateStatus.OFFLINE, SLACK)
+                .then(AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE, SLACK));
+        scenarios.add(check("malformed", 1, new Fault[]{Fault.MALFORMED}, AbstractUpdater.UpdateStatus.INCOMPATIBLE, SLACK)
+                .then(AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE, SLACK));
+        scenarios.add(check("server-errors", 4, new Fault[]{Fault.SERVER_ERROR}, AbstractUpdater.UpdateStatus.OFFLINE, SLACK)
+                .then(AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE, SLACK));
+        scenarios.add(check("too-many-requests", 1, new Fault[]{Fault.TOO_MANY_REQUESTS}, AbstractUpdater.UpdateStatus.RATE_LIMITED, SLACK));
+
+        // Downloads, like the update screen runs them.
+        scenarios.add(download("download-ok", new Fault[0], true, SLACK));
+        scenarios.add(download("download-truncate", new Fault[]{Fault.TRUNCATE}, true, SLACK));
+        scenarios.add(download("download-stall-body", new Fault[]{Fault.STALL_BODY}, true, timeoutBound));
+        scenarios.add(download("download-short-length", new Fault[]{Fault.SHORT_LENGTH}, true, SLACK));
+        scenarios.add(download("download-malformed", new Fault[]{Fault.MALFORMED}, true, SLACK));
+        scenarios.add(download("download-reset", new Fault[]{Fault.RESET, Fault.RESET}, true, SLACK));
+        scenarios.add(download("download-server-errors", new Fault[]{Fault.SERVER_ERROR, Fault.SERVER_ERROR, Fault.SERVER_ERROR}, false, SLACK));
+        scenarios.add(download("download-too-many-requests", new Fault[]{Fault.TOO_MANY_REQUESTS}, false, SLACK));
+
+        baseline.addAll(Thread.getAllStackTraces().keySet());
+        int run = 0;
+        for (Scenario scenario : scenarios) {
+            if (only.length > 0 && !contains(only, scenario.name)) {
+                continue;
+            }
+            run++;
+            runScenario(scenario);
+        }
+
+        System.out.println((run - scenarioFailures) + " of " + run + " scenarios passed.");
+        for (String failure : failures) {
+            System.out.println("  " + failure);
+        }
+        return scenarioFailures == 0;
+    }
+
+    private static boolean contains(String[] values, String value) {
+        for (String s : values) {
+            if (s.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void runScenario(Scenario scenario) throws Exception {
+        // A fresh client for every scenario, so open circuits and rate limits don't carry over.
+        client = new TrackingHttpClient(new UrlConnectionHttpClient(CONNECT_TIMEOUT, READ_TIMEOUT, 4));
+        HttpClients.set(new RateLimitingHttpClient(new CircuitBreakingHttpClient(client), 16, 50, 1000, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime())));
+
+        int before = failures.size();
+        List<String> results = new ArrayList<>();
+        long start = System.nanoTime();
+        if (scenario.download) {
+            runDownload(scenario, results);
+        } else {
+            runChecks(scenario, results);
+        }
+        checkLeaks(scenario.name);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        boolean passed = failures.size() == before;
+        if (!passed) {
+            scenarioFailures++;
+        }
+        System.out.println((passed ? "PASS " : "FAIL ") + scenario.name + ": " + String.join(", ", results) + " (" + millis + " ms)");
+    }
+
+    private void runChecks(Scenario scenario, List<String> results) throws InterruptedException {
+        List<StandInUpdater> updaters = new ArrayList<>();
+        for (int i = 0; i < scenario.mods; i++) {
+            String modId = scenario.name + "-" + i;
+            String path = "/manifests/" + modId + ".json";
+            byte[] manifest = StandInServer.createManifest(LATEST_VERSION, server.getUrl("/jars/" + modId + ".jar"), jarHash, jar.length).getBytes(StandardCharsets.UTF_8);
+            server.serve(path, "application/json", manifest, "\"" + modId + "\"");
+            server.script(path, scenario.faults);
+            updaters.add(new StandInUpdater(server.getUrl(path), modId, CURRENT_VERSION, null, false));
+        }
+
+        try {
+            for (int step = 0; step < scenario.expected.size(); step++) {
+                if (step > 0) {
+                    Thread.sleep(SHARE_WINDOW);
+                }
+                checkStep(scenario, updaters, scenario.expected.get(step), scenario.bounds.get(step), results);
+            }
+        } finally {
+            for (StandInUpdater updater : updaters) {
+                AbstractUpdater.unregister(updater);
+            }
+        }
+    }
+
+    private void checkStep(Scenario scenario, List<StandInUpdater> updaters, AbstractUpdater.UpdateStatus expected, long bound, List<String> results) throws InterruptedException {
+        UpdateCheckEngine engine = UpdateCheckEngine.get();
+        Map<AbstractUpdater<?>, AbstractUpdater.UpdateInfo> infos = new ConcurrentHashMap<>();
+        Map<AbstractUpdater<?>, Long> latencies = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        for (StandInUpdater updater : updaters) {
+            engine.check(updater, (checked, updateInfo) -> {
+                latencies.put(checked, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                infos.put(checked, updateInfo);
+            });
+        }
+
+        // This thread stands in for the main thread, results are handed over on its ticks.
+        long longestTick = 0;
+        while (infos.size() < updaters.size() && System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(GIVE_UP)) {
+            long tickStart = System.nanoTime();
+            engine.runMainThreadTasks();
+            longestTick = Math.max(longestTick, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - tickStart));
+            Thread.sleep(TICK);
+        }
+        if (longestTick > TICK) {
+            fail(scenario.name, "a tick took " + longestTick + " ms");
+        }
+
+        for (StandInUpdater updater : updaters) {
+            String modId = updater.getModInfo().getModId();
+            AbstractUpdater.UpdateInfo updateInfo = infos.get(updater);
+            if (updateInfo == null) {
+                fail(scenario.name, modId + " got no result within " + GIVE_UP + " ms");
+                results.add("none");
+                continue;
+            }
+
+            long latency = latencies.get(updater);
+            results.add(updateInfo.getStatus() + " in " + latency + " ms");
+            if (updateInfo.getStatus() != expected) {
+                fail(scenario.name, modId + " is " + updateInfo.getStatus() + " instead of " + expected + (updateInfo.getThrowable() != null ? " (" + updateInfo.getThrowable() + ")" : ""));
+            }
+            // Results are handed over on the next tick.
+            if (latency > bound + TICK) {
+                fail(scenario.name, modId + " took " + latency + " ms, bound is " + bound + " ms");
+            }
+        }
+    }
+
+    private void runDownload(Scenario scenario, List<String> results) {
+        String path = "/jars/" + scenario.name + ".jar";
+        server.serve(path, "application/java-archive", jar, "\"" + jarHash.substring(0, 16) + "\"");
+        server.script(path, scenario.faults);
+        File target = new File(downloadDir, scenario.name + ".jar");
+        FileDownload download = new FileDownload(server.getUrl(path), target, 8192, null, jarHash, jar.length, null);
+
+        long start = System.nanoTime();
+        List<FileDownload> failed = new DownloadScheduler(1).run(Collections.singletonList(download), new FileDownload.ProgressListener() {
+            @Override
+            public void onLength(long length) {
+
+            }
+
+            @Override
+            public void onProgress(long downloaded) {
+
+            }
+        });
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        boolean succeeded = failed.isEmpty();
+        results.add((succeeded ? "downloaded" : "failed") + " in " + millis + " ms after " + server.getRequests(path) + " requests");
+
+        if (succeeded != scenario.downloadSucceeds) {
+            fail(scenario.name, "download " + (succeeded ? "succeeded" : "failed") + ", expected it to " + (scenario.downloadSucceeds ? "succeed" : "fail"));
+        }
+        if (succeeded && target.length() != jar.length) {
+            fail(scenario.name, "downloaded " + target.length() + " of " + jar.length + " bytes");
+        }
+        // Every attempt may wait for the read timeout.
+        long bound = scenario.bounds.get(0) * scenario.faults.length + SLACK;
+        if (millis > bound) {
+            fail(scenario.name, "download took " + millis + " ms, bound is " + bound + " ms");
+        }
+    }
+
+    private void checkLeaks(String name) throws InterruptedException {
+        for (String request : client.getOpenResponses()) {
+            fail(name, "response of " + request + " was never closed");
+        }
+
+        // Threads still reading from a socket belong to a request that outlived its scenario.
+        List<String> blocked = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SLACK);
+        do {
+            blocked.clear();
+            for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+                Thread thread = entry.getKey();
+                if (thread != Thread.currentThread() && !thread.getName().startsWith("QFMFaultServer") && isReadingSocket(entry.getValue())) {
+                    blocked.add(thread.getName());
+                }
+            }
+        } while (!blocked.isEmpty() && System.nanoTime() < deadline && sleep());
+        for (String thread : blocked) {
+            fail(name, "thread " + thread + " is still blocked on a socket");
+        }
+
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!thread.isDaemon() && thread.isAlive() && !baseline.contains(thread)) {
+                fail(name, "non-daemon thread " + thread.getName() + " was left running");
+            }
+        }
+    }
+
+    private static boolean isReadingSocket(StackTraceElement[] stackTrace) {
+        for (StackTraceElement element : stackTrace) {
+            String className = element.getClassName();
+            if (className.equals("java.net.SocketInputStream") || className.equals("sun.nio.ch.NioSocketImpl") || className.equals("java.net.Socket$SocketInputStream")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sleep() throws InterruptedException {
+        Thread.sleep(TICK);
+        return true;
+    }
+
+    private void fail(String scenario, String message) {
+        failures.add(scenario + ": " + message);
+    }
+
+    private static Scenario check(String name, int mods, Fault[] faults, AbstractUpdater.UpdateStatus expected, long bound) {
+        return new Scenario(name, mods, faults, false, false).then(expected, bound);
+    }
+
+    private static Scenario download(String name, Fault[] faults, boolean succeeds, long bound) {
+        Scenario scenario = new Scenario(name, 1, faults, true, succeeds);
+        scenario.bounds.add(bound);
+        return scenario;
+    }
+
+    /**
+     * Scripted faults, and the expected outcome.
+     */
+    private static class Scenario {
+        private final String name;
+        private final int mods;
+        private final Fault[] faults;
+        private final boolean download;
+        private final boolean downloadSucceeds;
+        private final List<AbstractUpdater.UpdateStatus> expected = new ArrayList<>();
+        private final List<Long> bounds = new ArrayList<>();
+
+        Scenario(String name, int mods, Fault[] faults, boolean download, boolean downloadSucceeds) {
+            this.name = name;
+            this.mods = mods;
+            this.faults = faults;
+            this.download = download;
+            this.downloadSucceeds = downloadSucceeds;
+        }
+
+        /**
+         * Check every mod again, once the previous fetches aren't shared anymore.
+         *
+         * @param status the expected update status.
+         * @param bound the maximum latency of the check, in milliseconds.
+         * @return this scenario.
+         */
+        Scenario then(AbstractUpdater.UpdateStatus status, long bound) {
+            expected.add(status);
+            bounds.add(bound);
+            return this;
+        }
+    }
+}
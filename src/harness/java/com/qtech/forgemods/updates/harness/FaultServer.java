@@ -0,0 +1,414 @@
+package com.qtech.forgemods.updates.harness;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in http server that fails on purpose, following a script of {@link Fault faults} per path.
+ * Built on plain sockets instead of the JDK http server, so responses can break the protocol: stall, lie about their length, or reset the connection.
+ * Every connection serves a single request ({@code Connection: close}), and faults are taken from the script of the requested path in order,
+ * so a scenario plays out the same way on every run. Requests without a scripted fault left are served normally.
+ *
+ * @author Qboi123
+ */
+public class FaultServer implements Closeable {
+    private static final byte[] MALFORMED_BODY = "{\"mc_versions\": {\"1.16.4\": {\"stable\": [\"version\": }".getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_HEAD_SIZE = 16 * 1024;
+
+    private final Map<String, Resource> resources = new ConcurrentHashMap<>();
+    private final Map<String, Queue<Fault>> scripts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile long trickleInterval = 100;
+    private volatile long stallTime = TimeUnit.MINUTES.toMillis(1);
+    private ServerSocket serverSocket;
+
+    /**
+     * Start accepting connections on a free port of the loopback address.
+     *
+     * @throws IOException if the server socket couldn't be opened.
+     */
+    public synchronized void start() throws IOException {
+        serverSocket = new ServerSocket(0, 64, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "QFMFaultServer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed.countDown();
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+            // Closing anyway.
+        }
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Serve a resource.
+     *
+     * @param path the path of the resource.
+     * @param contentType the content type.
+     * @param body the body.
+     * @param eTag the entity tag, or null to serve it without one.
+     */
+    public void serve(String path, String contentType, byte[] body, @Nullable String eTag) {
+        resources.put(path, new Resource(contentType, body, eTag));
+    }
+
+    /**
+     * Add faults to the script of a path, played in order by the next requests.
+     *
+     * @param path the path.
+     * @param faults the faults.
+     */
+    public void script(String path, Fault... faults) {
+        scripts.computeIfAbsent(path, p -> new ArrayDeque<>()).addAll(Arrays.asList(faults));
+    }
+
+    public URL getUrl(String path) {
+        try {
+            return new URL("http", serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort(), path);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param path the path.
+     * @return the amount of requests for the path so far.
+     */
+    public int getRequests(String path) {
+        AtomicInteger count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @param trickleInterval the time between two bytes of a {@link Fault#TRICKLE trickled} body, in milliseconds.
+     */
+    public void setTrickleInterval(long trickleInterval) {
+        this.trickleInterval = trickleInterval;
+    }
+
+    /**
+     * @param stallTime the time a stalled response holds its connection before closing it, in milliseconds.
+     */
+    public void setStallTime(long stallTime) {
+        this.stallTime = stallTime;
+    }
+
+    private void accept() {
+        while (closed.getCount() > 0) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // Closed.
+                return;
+            }
+
+            connections.add(socket);
+            Thread thread = new Thread(() -> handle(socket), "QFMFaultServer-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            Request request = readRequest(new BufferedInputStream(socket.getInputStream()));
+            if (request != null) {
+                requests.computeIfAbsent(request.path, p -> new AtomicInteger()).incrementAndGet();
+                respond(socket, request, nextFault(request.path));
+            }
+        } catch (IOException e) {
+            // The client gave up on the response, expected for most faults.
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private Fault nextFault(String path) {
+        Queue<Fault> script = scripts.get(path);
+        if (script == null) {
+            return Fault.NONE;
+        }
+        synchronized (script) {
+            Fault fault = script.poll();
+            return fault == null ? Fault.NONE : fault;
+        }
+    }
+
+    private void respond(Socket socket, Request request, Fault fault) throws IOException {
+        OutputStream outputStream = socket.getOutputStream();
+        switch (fault) {
+            case STALL:
+                hold();
+                return;
+            case RESET:
+                // Closing with a zero linger time sends a reset instead of a normal close.
+                socket.setSoLinger(true, 0);
+                return;
+            case SERVER_ERROR:
+                writeError(outputStream, 503, "Service Unavailable", null);
+                return;
+            case TOO_MANY_REQUESTS:
+                writeError(outputStream, 429, "Too Many Requests", "120");
+                return;
+            default:
+                break;
+        }
+
+        Resource resource = resources.get(request.path);
+        if (resource == null) {
+            writeError(outputStream, 404, "Not Found", null);
+            return;
+        }
+
+        byte[] body = fault == Fault.MALFORMED ? MALFORMED_BODY : resource.body;
+        int start = 0;
+        int status = 200;
+        StringBuilder head = new StringBuilder();
+        if (fault == Fault.NONE && resource.eTag != null && resource.eTag.equals(request.headers.get("if-none-match"))) {
+            outputStream.write(("HTTP/1.1 304 Not Modified\r\nETag: " + resource.eTag + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            outputStream.flush();
+            return;
+        }
+        String range = request.headers.get("range");
+        String ifRange = request.headers.get("if-range");
+        if (fault == Fault.NONE && range != null && range.startsWith("bytes=") && range.endsWith("-") && (ifRange == null || ifRange.equals(resource.eTag))) {
+            start = Integer.parseInt(range.substring(6, range.length() - 1));
+            if (start >= body.length) {
+                writeError(outputStream, 416, "Range Not Satisfiable", null);
+                return;
+            }
+            status = 206;
+            head.append("Content-Range: bytes ").append(start).append('-').append(body.length - 1).append('/').append(body.length).append("\r\n");
+        }
+
+        int length = body.length - start;
+        int announced = fault == Fault.SHORT_LENGTH ? length / 2 : length;
+        head.insert(0, "HTTP/1.1 " + status + (status == 200 ? " OK" : " Partial Content") + "\r\n");
+        head.append("Content-Type: ").append(resource.contentType).append("\r\n");
+        head.append("Content-Length: ").append(announced).append("\r\n");
+        head.append("Accept-Ranges: bytes\r\n");
+        if (resource.eTag != null) {
+            head.append("ETag: ").append(resource.eTag).append("\r\n");
+        }
+        head.append("Connection: close\r\n\r\n");
+        outputStream.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (request.method.equals("HEAD")) {
+            outputStream.flush();
+            return;
+        }
+
+        switch (fault) {
+            case STALL_BODY:
+                outputStream.write(body, start, length / 2);
+                outputStream.flush();
+                hold();
+                break;
+            case TRICKLE:
+                for (int i = start; i < body.length && closed.getCount() > 0; i++) {
+                    outputStream.write(body[i]);
+                    outputStream.flush();
+                    sleep(trickleInterval);
+                }
+                break;
+            case TRUNCATE:
+                outputStream.write(body, start, length / 2);
+                break;
+            default:
+                outputStream.write(body, start, length);
+                break;
+        }
+        outputStream.flush();
+    }
+
+    private static void writeError(OutputStream outputStream, int status, String reason, @Nullable String retryAfter) throws IOException {
+        byte[] body = reason.getBytes(StandardCharsets.ISO_8859_1);
+        String head = "HTTP/1.1 " + status + " " + reason + "\r\nContent-Type: text/plain\r\nContent-Length: " + body.length + "\r\n"
+                + (retryAfter != null ? "Retry-After: " + retryAfter + "\r\n" : "") + "Connection: close\r\n\r\n";
+        outputStream.write(head.getBytes(StandardCharsets.ISO_8859_1));
+        outputStream.write(body);
+        outputStream.flush();
+    }
+
+    @Nullable
+    private Request readRequest(InputStream inputStream) throws IOException {
+        // Read the request line and headers, up to the empty line.
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int b = inputStream.read();
+            if (b < 0) {
+                return null;
+            }
+            if (head.size() >= MAX_HEAD_SIZE) {
+                throw new IOException("Request head too large.");
+            }
+            head.write(b);
+            matched = (b == '\r' && matched % 2 == 0) || (b == '\n' && matched % 2 == 1) ? matched + 1 : b == '\r' ? 1 : 0;
+        }
+
+        String[] lines = new String(head.toByteArray(), StandardCharsets.ISO_8859_1).split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length < 2) {
+            throw new IOException("Malformed request line: " + lines[0]);
+        }
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+            }
+        }
+
+        // Skip the request body, if any.
+        String contentLength = headers.get("content-length");
+        if (contentLength != null) {
+            long remaining = Long.parseLong(contentLength);
+            while (remaining > 0) {
+                long skipped = inputStream.skip(remaining);
+                if (skipped <= 0 && inputStream.read() < 0) {
+                    break;
+                }
+                remaining -= Math.max(1, skipped);
+            }
+        }
+
+        String path = requestLine[1];
+        int query = path.indexOf('?');
+        return new Request(requestLine[0], query < 0 ? path : path.substring(0, query), headers);
+    }
+
+    private void hold() {
+        try {
+            closed.await(stallTime, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) throws SocketException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SocketException("Interrupted while trickling the body.");
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Already gone.
+        }
+    }
+
+    /**
+     * Scripted fault of a single response.
+     *
+     * @author Qboi123
+     */
+    public enum Fault {
+        /**
+         * Serve normally, with {@code 304 Not Modified} and byte range support.
+         */
+        NONE,
+        /**
+         * Read the request, but never respond.
+         */
+        STALL,
+        /**
+         * Send the headers and half of the body, then stop sending.
+         */
+        STALL_BODY,
+        /**
+         * Send the headers, then the body a byte at a time, every byte well within the read timeout.
+         */
+        TRICKLE,
+        /**
+         * Announce the full length, send half of the body and close.
+         */
+        TRUNCATE,
+        /**
+         * Announce half of the length and send the full body, so the client only reads the first half.
+         */
+        SHORT_LENGTH,
+        /**
+         * Reset the connection without responding.
+         */
+        RESET,
+        /**
+         * Respond with {@code 503 Service Unavailable}.
+         */
+        SERVER_ERROR,
+        /**
+         * Respond with {@code 429 Too Many Requests}, retry after two minutes.
+         */
+        TOO_MANY_REQUESTS,
+        /**
+         * Respond with a body that isn't valid json, with the ETag of the real body.
+         */
+        MALFORMED
+    }
+
+    private static class Resource {
+        private final String contentType;
+        private final byte[] body;
+        private final String eTag;
+
+        Resource(String contentType, byte[] body, @Nullable String eTag) {
+            this.contentType = contentType;
+            this.body = body;
+            this.eTag = eTag;
+        }
+    }
+
+    private static class Request {
+        private final String method;
+        private final String path;
+        private final Map<String, String> headers;
+
+        Request(String method, String path, Map<String, String> headers) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+        }
+    }
+}
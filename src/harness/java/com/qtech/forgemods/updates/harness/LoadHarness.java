@@ -0,0 +1,282 @@
+package com.qtech.forgemods.updates.harness;
+
+import com.qtech.forgemods.updates.AbstractUpdater;
+import com.qtech.forgemods.updates.UpdateCheckEngine;
+import com.qtech.forgemods.updates.download.FileDownload;
+import com.qtech.forgemods.updates.download.SegmentedDownloader;
+import com.qtech.forgemods.updates.metrics.Histogram;
+import com.qtech.forgemods.updates.metrics.UpdateMetrics;
+import com.qtech.forgemods.updates.net.CircuitBreakingHttpClient;
+import com.qtech.forgemods.updates.net.HttpClients;
+import com.qtech.forgemods.updates.net.UrlConnectionHttpClient;
+import net.minecraftforge.fml.loading.FMLPaths;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of the update checker and downloader against a {@link StandInServer}.
+ * Runs several check cycles over many updaters from a pool of checker threads, then many downloads from a pool of downloader threads,
+ * and reports throughput and latency percentiles. Exits with status 1 if a check or download failed.
+ * <p>
+ * Options are given as {@code --name=value}:
+ * <ul>
+ *     <li>{@code updaters} (200): the amount of mods and updaters.</li>
+ *     <li>{@code checkers} (16): the amount of concurrent check threads.</li>
+ *     <li>{@code cycles} (5): the amount of times every updater is checked.</li>
+ *     <li>{@code pause} (0): the time between two cycles, in milliseconds. Cycles less than 5 seconds apart share the manifest fetches
+ *     of the previous cycle, with a longer pause the cached manifests are revalidated.</li>
+ *     <li>{@code batch} (off): {@code get} or {@code post} to check through the batch manifest with the check engine instead.</li>
+ *     <li>{@code downloads} (50): the amount of jar downloads.</li>
+ *     <li>{@code downloaders} (4): the amount of concurrent download threads.</li>
+ *     <li>{@code segments} (1): the amount of segments per download, only used for jars of at least two {@value SegmentedDownloader#MIN_SEGMENT_SIZE} byte segments.</li>
+ *     <li>{@code jar-size} (1048576): the size of the jars, in bytes.</li>
+ *     <li>{@code latency} (20): the server delay before every response, in milliseconds.</li>
+ *     <li>{@code throughput} (0): the throughput cap of every response, in bytes per second, 0 for no cap.</li>
+ *     <li>{@code etags} (true) and {@code ranges} (true): whether the server supports conditional and range requests.</li>
+ *     <li>{@code rate-limit} (false): keep the default per host rate limit, which otherwise dominates the results.</li>
+ * </ul>
+ *
+ * @author Qboi123
+ */
+public final class LoadHarness {
+    private static final String CURRENT_VERSION = "2.0.1-beta1";
+    private static final String LATEST_VERSION = "2.0.2-beta1";
+
+    private final Map<String, String> options;
+    private final UpdateMetrics results = new UpdateMetrics();
+    private final Map<String, AtomicInteger> statuses = new TreeMap<>();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private LoadHarness(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Options are given as --name=value, got: " + arg);
+            }
+            int split = arg.indexOf('=');
+            options.put(split < 0 ? arg.substring(2) : arg.substring(2, split), split < 0 ? "true" : arg.substring(split + 1));
+        }
+
+        System.exit(new LoadHarness(options).run() ? 0 : 1);
+    }
+
+    private int getInt(String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private boolean getBoolean(String name, boolean defaultValue) {
+        return options.containsKey(name) ? Boolean.parseBoolean(options.get(name)) : defaultValue;
+    }
+
+    private boolean run() throws Exception {
+        // The manifest and download caches live in the game directory.
+        Path gameDir = Files.createTempDirectory("qfm-loadtest");
+        FMLPaths.loadAbsolutePaths(gameDir);
+        if (!getBoolean("rate-limit", false)) {
+            HttpClients.set(new CircuitBreakingHttpClient(new UrlConnectionHttpClient()));
+        }
+
+        int updaters = getInt("updaters", 200);
+        try (StandInServer server = new StandInServer(updaters, getInt("jar-size", 1024 * 1024), LATEST_VERSION)) {
+            server.setLatency(getInt("latency", 20));
+            server.setThroughput(getInt("throughput", 0));
+            server.setETags(getBoolean("etags", true));
+            server.setRanges(getBoolean("ranges", true));
+            server.start();
+
+            String batch = options.get("batch");
+            List<StandInUpdater> updaterList = new ArrayList<>(updaters);
+            for (int i = 0; i < updaters; i++) {
+                String modId = StandInServer.getModId(i);
+                updaterList.add(new StandInUpdater(server.getManifestUrl(modId), modId, CURRENT_VERSION, batch != null ? server.getBatchUrl() : null, "post".equals(batch)));
+            }
+
+            System.out.println("Stand-in server at " + server.getUrl("/") + ", " + updaters + " mods, " + server.getJarSize() + " byte jars");
+            if (batch != null) {
+                runBatchChecks(updaterList);
+            } else {
+                runChecks(updaterList);
+            }
+            runDownloads(server, gameDir.toFile());
+
+            System.out.println("Server: " + server.getRequests() + " requests, " + server.getNotModified() + " not modified, "
+                    + server.getPartial() + " partial, " + server.getBytesSent() / 1024 + " KiB sent");
+
+            // Leave out the per mod latencies, the check latency above covers them.
+            for (String line : UpdateMetrics.get().getSummary().split("\n")) {
+                if (!line.startsWith("  check.latency.")) {
+                    System.out.println(line);
+                }
+            }
+
+            for (StandInUpdater updater : updaterList) {
+                AbstractUpdater.unregister(updater);
+            }
+        }
+        return failures.get() == 0;
+    }
+
+    private void runChecks(List<StandInUpdater> updaters) throws Exception {
+        int cycles = getInt("cycles", 5);
+        int checkers = getInt("checkers", 16);
+        ExecutorService executor = Executors.newFixedThreadPool(checkers, daemonThreads("QFMLoadChecker"));
+        Histogram latency = results.histogram("check", "ms");
+        Histogram cycleTime = results.histogram("cycle", "ms");
+
+        long nanos = 0;
+        for (int cycle = 0; cycle < cycles; cycle++) {
+            pause(cycle);
+            long cycleStart = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(updaters.size());
+            for (StandInUpdater updater : updaters) {
+                futures.add(executor.submit(() -> {
+                    long checkStart = System.nanoTime();
+                    AbstractUpdater.UpdateInfo updateInfo = updater.checkForUpdates();
+                    latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - checkStart));
+                    recordStatus(updateInfo.getStatus());
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long cycleNanos = System.nanoTime() - cycleStart;
+            cycleTime.record(TimeUnit.NANOSECONDS.toMillis(cycleNanos));
+            nanos += cycleNanos;
+        }
+        executor.shutdown();
+
+        int checks = updaters.size() * cycles;
+        System.out.println(String.format(Locale.ROOT, "Checks: %d in %d ms with %d threads (%.1f/s), %s", checks, TimeUnit.NANOSECONDS.toMillis(nanos), checkers, checks / (nanos / 1e9), statuses));
+        System.out.println("  Check latency: " + latency.snapshot());
+        System.out.println("  Cycle time: " + cycleTime.snapshot());
+    }
+
+    private void runBatchChecks(List<StandInUpdater> updaters) throws Exception {
+        int cycles = getInt("cycles", 5);
+        UpdateCheckEngine engine = UpdateCheckEngine.get();
+        Histogram cycleTime = results.histogram("cycle", "ms");
+
+        long nanos = 0;
+        for (int cycle = 0; cycle < cycles; cycle++) {
+            pause(cycle);
+            long cycleStart = System.nanoTime();
+            CountDownLatch done = new CountDownLatch(updaters.size());
+            engine.checkAll((checked, updateInfo) -> {
+                recordStatus(updateInfo.getStatus());
+                done.countDown();
+            });
+
+            // This thread stands in for the main thread.
+            while (!done.await(1, TimeUnit.MILLISECONDS)) {
+                engine.runMainThreadTasks();
+            }
+            long cycleNanos = System.nanoTime() - cycleStart;
+            cycleTime.record(TimeUnit.NANOSECONDS.toMillis(cycleNanos));
+            nanos += cycleNanos;
+        }
+
+        int checks = updaters.size() * cycles;
+        System.out.println(String.format(Locale.ROOT, "Batch checks: %d in %d ms (%.1f/s), %s", checks, TimeUnit.NANOSECONDS.toMillis(nanos), checks / (nanos / 1e9), statuses));
+        System.out.println("  Cycle time: " + cycleTime.snapshot());
+    }
+
+    private void pause(int cycle) throws InterruptedException {
+        if (cycle > 0) {
+            Thread.sleep(getInt("pause", 0));
+        }
+    }
+
+    private void recordStatus(AbstractUpdater.UpdateStatus status) {
+        synchronized (statuses) {
+            statuses.computeIfAbsent(status.name(), name -> new AtomicInteger()).incrementAndGet();
+        }
+        if (status != AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE && status != AbstractUpdater.UpdateStatus.UP_TO_DATE) {
+            failures.incrementAndGet();
+        }
+    }
+
+    private void runDownloads(StandInServer server, File gameDir) throws Exception {
+        int downloads = getInt("downloads", 50);
+        int downloaders = getInt("downloaders", 4);
+        int segments = getInt("segments", 1);
+        File dir = new File(gameDir, "downloads");
+        if (!dir.mkdirs()) {
+            throw new IOException("Couldn't create the download directory: " + dir);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(downloaders, daemonThreads("QFMLoadDownloader"));
+        Histogram duration = results.histogram("download", "ms");
+        AtomicInteger failed = new AtomicInteger();
+
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(downloads);
+        for (int i = 0; i < downloads; i++) {
+            String modId = StandInServer.getModId(i % getInt("updaters", 200));
+            File target = new File(dir, "download-" + i + ".jar");
+            FileDownload download = new FileDownload(server.getJarUrl(modId), target, 64 * 1024, segments > 1 ? new SegmentedDownloader(segments, 64 * 1024) : null, server.getJarHash(), server.getJarSize(), null);
+            futures.add(executor.submit(() -> {
+                long downloadStart = System.nanoTime();
+                try {
+                    download.run(new FileDownload.ProgressListener() {
+                        @Override
+                        public void onLength(long length) {
+
+                        }
+
+                        @Override
+                        public void onProgress(long downloaded) {
+
+                        }
+                    });
+                    duration.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - downloadStart));
+                } catch (IOException e) {
+                    failed.incrementAndGet();
+                    failures.incrementAndGet();
+                    System.err.println("Download of " + modId + " failed: " + e);
+                } finally {
+                    if (target.exists() && !target.delete()) {
+                        target.deleteOnExit();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long nanos = System.nanoTime() - start;
+        executor.shutdown();
+
+        double mebibytes = (double) (downloads - failed.get()) * server.getJarSize() / (1024 * 1024);
+        System.out.println(String.format(Locale.ROOT, "Downloads: %d in %d ms with %d threads (%.1f MiB/s), %d failed", downloads, TimeUnit.NANOSECONDS.toMillis(nanos), downloaders, mebibytes / (nanos / 1e9), failed.get()));
+        System.out.println("  Download time: " + duration.snapshot());
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,356 @@
+package com.qtech.forgemods.updates.harness;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for an update server, serving generated manifests and jars over http.
+ * <ul>
+ *     <li>{@code /manifests/<modId>.json}: the manifest of a mod, with a release for {@value #MC_VERSION} on both channels.</li>
+ *     <li>{@code /batch.json}: a batch manifest with every mod.</li>
+ *     <li>{@code /jars/<modId>.jar}: the release jar of a mod, the same generated bytes for every mod.</li>
+ * </ul>
+ * Responses can be delayed and throttled, and ETag ({@code If-None-Match}) and {@code Range} support can be turned off,
+ * to see how the updaters behave against slower or simpler servers.
+ *
+ * @author Qboi123
+ */
+public class StandInServer implements Closeable {
+    public static final String MC_VERSION = "1.16.4";
+    private static final int CHUNK_SIZE = 8192;
+
+    private final int mods;
+    private final String latestVersion;
+    private final byte[] jar;
+    private final String jarHash;
+    private volatile byte[] batchManifest;
+    private volatile long latency;
+    private volatile long bytesPerSecond;
+    private volatile boolean eTags = true;
+    private volatile boolean ranges = true;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong partial = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Stand-in server: constructor.
+     *
+     * @param mods the amount of mods to serve, with ids {@code mod0} up to {@code mod<mods - 1>}.
+     * @param jarSize the size of the release jars, in bytes.
+     * @param latestVersion the version of every release.
+     */
+    public StandInServer(int mods, int jarSize, String latestVersion) {
+        this.mods = mods;
+        this.latestVersion = latestVersion;
+        this.jar = new byte[jarSize];
+        new Random(jarSize).nextBytes(jar);
+        this.jarHash = sha256(jar);
+    }
+
+    public static String getModId(int index) {
+        return "mod" + index;
+    }
+
+    /**
+     * Start serving on a free port of the loopback address.
+     *
+     * @throws IOException if the server couldn't be started.
+     */
+    public synchronized void start() throws IOException {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "QFMStandInServer-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+
+        // Download urls point at the running server, so the batch manifest is generated once the port is known.
+        batchManifest = generateBatchManifest();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public URL getUrl(String path) {
+        try {
+            return new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(), path);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public URL getManifestUrl(String modId) {
+        return getUrl("/manifests/" + modId + ".json");
+    }
+
+    public URL getBatchUrl() {
+        return getUrl("/batch.json");
+    }
+
+    public URL getJarUrl(String modId) {
+        return getUrl("/jars/" + modId + ".jar");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (latency > 0) {
+                sleep(latency);
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/batch.json")) {
+                send(exchange, batchManifest, "application/json", "\"batch-" + latestVersion + "\"", false);
+            } else if (path.startsWith("/manifests/") && path.endsWith(".json") && isMod(path.substring(11, path.length() - 5))) {
+                String modId = path.substring(11, path.length() - 5);
+                send(exchange, generateManifest(modId).getBytes(StandardCharsets.UTF_8), "application/json", "\"" + modId + "-" + latestVersion + "\"", false);
+            } else if (path.startsWith("/jars/") && path.endsWith(".jar") && isMod(path.substring(6, path.length() - 4))) {
+                send(exchange, jar, "application/java-archive", "\"" + jarHash.substring(0, 16) + "\"", true);
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean isMod(String modId) {
+        if (!modId.startsWith("mod")) {
+            return false;
+        }
+        try {
+            int index = Integer.parseInt(modId.substring(3));
+            return index >= 0 && index < mods;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void send(HttpExchange exchange, byte[] body, String contentType, String eTag, boolean rangeable) throws IOException {
+        Headers requestHeaders = exchange.getRequestHeaders();
+        Headers responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.set("Content-Type", contentType);
+        if (eTags) {
+            responseHeaders.set("ETag", eTag);
+            if (eTag.equals(requestHeaders.getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+
+        int start = 0;
+        int end = body.length;
+        int status = 200;
+        if (rangeable && ranges) {
+            responseHeaders.set("Accept-Ranges", "bytes");
+            String range = requestHeaders.getFirst("Range");
+            String ifRange = requestHeaders.getFirst("If-Range");
+            if (range != null && range.startsWith("bytes=") && (ifRange == null || ifRange.equals(eTag))) {
+                String[] bounds = range.substring(6).split("-", 2);
+                start = Integer.parseInt(bounds[0].trim());
+                if (bounds.length > 1 && !bounds[1].trim().isEmpty()) {
+                    end = Math.min(body.length, Integer.parseInt(bounds[1].trim()) + 1);
+                }
+                if (start >= body.length) {
+                    responseHeaders.set("Content-Range", "bytes */" + body.length);
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+                status = 206;
+                partial.incrementAndGet();
+                responseHeaders.set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + body.length);
+            }
+        }
+
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            responseHeaders.set("Content-Length", Integer.toString(end - start));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, end - start);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            long begin = System.nanoTime();
+            int sent = 0;
+            for (int offset = start; offset < end; offset += CHUNK_SIZE) {
+                int count = Math.min(CHUNK_SIZE, end - offset);
+                outputStream.write(body, offset, count);
+                sent += count;
+                bytesSent.addAndGet(count);
+
+                // Throttle to the throughput cap.
+                long cap = bytesPerSecond;
+                if (cap > 0) {
+                    long ahead = TimeUnit.SECONDS.toMillis(sent) / cap - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+                    if (ahead > 0) {
+                        sleep(ahead);
+                    }
+                }
+            }
+        }
+    }
+
+    private String generateManifest(String modId) {
+        return createManifest(latestVersion, getJarUrl(modId), jarHash, jar.length);
+    }
+
+    /**
+     * Create a manifest with the same release for {@value #MC_VERSION} on both channels.
+     *
+     * @param version the release version.
+     * @param download the download url of the release.
+     * @param sha256 the SHA-256 hash of the release file.
+     * @param size the size of the release file.
+     * @return the manifest json.
+     */
+    static String createManifest(String version, URL download, String sha256, long size) {
+        StringWriter body = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(body)) {
+            writeManifest(writer, version, download, sha256, size);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return body.toString();
+    }
+
+    private byte[] generateBatchManifest() {
+        StringWriter body = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(body)) {
+            writer.beginObject();
+            writer.name("check_interval").value(300);
+            writer.name("mods").beginObject();
+            for (int i = 0; i < mods; i++) {
+                writer.name(getModId(i));
+                writeManifest(writer, latestVersion, getJarUrl(getModId(i)), jarHash, jar.length);
+            }
+            writer.endObject();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeManifest(JsonWriter writer, String version, URL download, String sha256, long size) throws IOException {
+        writer.beginObject();
+        writer.name("check_interval").value(300);
+        writer.name("mc_versions").beginObject();
+        writer.name(MC_VERSION).beginObject();
+        for (String channel : new String[]{"stable", "unstable"}) {
+            writer.name(channel).beginObject();
+            writer.name("version").value(version);
+            writer.name("download").value(download.toExternalForm());
+            writer.name("sha256").value(sha256);
+            writer.name("size").value(size);
+            writer.endObject();
+        }
+        writer.endObject();
+        writer.endObject();
+        writer.endObject();
+    }
+
+    static String sha256(byte[] data) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while delaying the response.");
+        }
+    }
+
+    /**
+     * @param latency the delay before every response, in milliseconds.
+     */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @param bytesPerSecond the throughput cap of every response body, 0 for no cap.
+     */
+    public void setThroughput(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public void setETags(boolean eTags) {
+        this.eTags = eTags;
+    }
+
+    public void setRanges(boolean ranges) {
+        this.ranges = ranges;
+    }
+
+    public String getJarHash() {
+        return jarHash;
+    }
+
+    public int getJarSize() {
+        return jar.length;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    public long getPartial() {
+        return partial.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+}
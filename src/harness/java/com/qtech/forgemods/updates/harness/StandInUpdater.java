@@ -0,0 +1,90 @@
+package com.qtech.forgemods.updates.harness;
+
+import com.qtech.forgemods.core.QFMVersion;
+import com.qtech.forgemods.updates.AbstractUpdater;
+import net.minecraftforge.forgespi.language.IModInfo;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Proxy;
+import java.net.URL;
+
+/**
+ * Updater for a mod served by a {@link StandInServer}, usable without a running game or mod list.
+ *
+ * @author Qboi123
+ */
+public class StandInUpdater extends AbstractUpdater<QFMVersion> {
+    private final QFMVersion currentVersion;
+    private final URL batchUrl;
+    private final boolean batchPost;
+
+    /**
+     * Stand-in updater: constructor.
+     *
+     * @param url the update manifest url.
+     * @param modId the mod id.
+     * @param currentVersion the installed version of the mod.
+     * @param batchUrl the batch manifest url, or null to check with the update manifest url only.
+     * @param batchPost true to POST to the batch url, false to GET it.
+     */
+    public StandInUpdater(URL url, String modId, String currentVersion, @Nullable URL batchUrl, boolean batchPost) {
+        super(url, createModInfo(modId));
+        this.currentVersion = new QFMVersion(currentVersion);
+        this.batchUrl = batchUrl;
+        this.batchPost = batchPost;
+    }
+
+    /**
+     * Create mod information without a mod file, only the mod id and display name are available.
+     *
+     * @param modId the mod id.
+     * @return the mod information.
+     */
+    private static IModInfo createModInfo(String modId) {
+        return (IModInfo) Proxy.newProxyInstance(IModInfo.class.getClassLoader(), new Class<?>[]{IModInfo.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getModId":
+                case "getDisplayName":
+                case "toString":
+                    return modId;
+                case "hashCode":
+                    return modId.hashCode();
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException("Stand-in mod info has no " + method.getName());
+            }
+        });
+    }
+
+    @Override
+    public QFMVersion parseVersion(String version) {
+        return new QFMVersion(version);
+    }
+
+    @Override
+    public QFMVersion getCurrentModVersion() {
+        return currentVersion;
+    }
+
+    @Override
+    protected String getMinecraftVersion() {
+        return StandInServer.MC_VERSION;
+    }
+
+    @Override
+    protected boolean isStableChannel() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public URL getBatchUrl() {
+        return batchUrl;
+    }
+
+    @Override
+    public boolean isBatchPost() {
+        return batchPost;
+    }
+}
@@ -0,0 +1,88 @@
+package com.qtech.forgemods.updates.harness;
+
+import com.qtech.forgemods.updates.net.HttpClient;
+import com.qtech.forgemods.updates.net.HttpRequest;
+import com.qtech.forgemods.updates.net.HttpResponse;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Http client keeping track of the responses of another client that weren't closed yet.
+ * A response that's never closed leaks its connection and its connection permit, so every response should be closed once handled.
+ *
+ * @author Qboi123
+ */
+public class TrackingHttpClient implements HttpClient {
+    private final HttpClient delegate;
+    private final Map<TrackedResponse, String> open = new ConcurrentHashMap<>();
+
+    /**
+     * Tracking http client: constructor.
+     *
+     * @param delegate the client sending the requests.
+     */
+    public TrackingHttpClient(HttpClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        TrackedResponse response = new TrackedResponse(delegate.execute(request));
+        open.put(response, request.getMethod() + " " + request.getUrl());
+        return response;
+    }
+
+    /**
+     * Get the requests with a response that wasn't closed yet.
+     *
+     * @return the method and url of every open response.
+     */
+    public List<String> getOpenResponses() {
+        return new ArrayList<>(open.values());
+    }
+
+    private class TrackedResponse implements HttpResponse {
+        private final HttpResponse response;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        TrackedResponse(HttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public int getStatus() {
+            return response.getStatus();
+        }
+
+        @Nullable
+        @Override
+        public String getHeader(String name) {
+            return response.getHeader(name);
+        }
+
+        @Override
+        public long getContentLength() {
+            return response.getContentLength();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                open.remove(this);
+            }
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.qtech.forgemods.updates.benchmark;
+
+import com.qtech.forgemods.updates.Dependencies;
+import com.qtech.forgemods.updates.Dependency;
+import com.qtech.forgemods.updates.DependencyResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flattening and hashing of wide and deep dependency trees, locked (as parsed from a manifest) and unlocked.
+ *
+ * @author Qboi123
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DependenciesBenchmark {
+    /**
+     * Shape of the tree, as {@code <width>x<depth>}.
+     */
+    @Param({"50x1", "3x5", "8x3"})
+    public String shape;
+
+    private Dependency lockedRoot;
+    private Dependency unlockedRoot;
+
+    @Setup
+    public void setup() throws MalformedURLException {
+        String[] parts = shape.split("x");
+        int width = Integer.parseInt(parts[0]);
+        int depth = Integer.parseInt(parts[1]);
+        lockedRoot = new Dependency("root", "Root", new URL("https://example.com/root.jar"), createTree("dep", width, depth, true));
+        unlockedRoot = new Dependency("root", "Root", new URL("https://example.com/root.jar"), createTree("dep", width, depth, false));
+    }
+
+    private static Dependencies createTree(String prefix, int width, int depth, boolean lock) throws MalformedURLException {
+        Dependencies dependencies = new Dependencies();
+        if (depth > 0) {
+            for (int i = 0; i < width; i++) {
+                String modId = prefix + "_" + i;
+                dependencies.add(new Dependency(modId, modId, new URL("https://example.com/" + modId + ".jar"), createTree(modId, width, depth - 1, lock)));
+            }
+        }
+        if (lock) {
+            dependencies.lock();
+        }
+        return dependencies;
+    }
+
+    @Benchmark
+    public Set<Dependency> getAllLocked() {
+        return lockedRoot.getDependencies().getAll();
+    }
+
+    @Benchmark
+    public Set<Dependency> getAllUnlocked() {
+        return unlockedRoot.getDependencies().getAll();
+    }
+
+    @Benchmark
+    public int hashCodeLocked() {
+        return lockedRoot.hashCode();
+    }
+
+    @Benchmark
+    public int hashCodeUnlocked() {
+        return unlockedRoot.hashCode();
+    }
+
+    @Benchmark
+    public List<Dependency> plan() {
+        return DependencyResolver.plan(Collections.singletonList(lockedRoot));
+    }
+}
@@ -0,0 +1,119 @@
+package com.qtech.forgemods.updates.benchmark;
+
+import com.google.gson.stream.JsonWriter;
+import com.qtech.forgemods.updates.manifest.ManifestParser;
+import com.qtech.forgemods.updates.manifest.ManifestRelease;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of generated update manifests, with many Minecraft versions and deep dependency trees.
+ *
+ * @author Qboi123
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ManifestParserBenchmark {
+    private static final String CHANNEL = "stable";
+
+    /**
+     * Amount of Minecraft versions in the manifest.
+     */
+    @Param({"5", "50"})
+    public int mcVersions;
+
+    /**
+     * Depth of the dependency tree of every release.
+     */
+    @Param({"1", "4"})
+    public int depth;
+
+    /**
+     * Amount of dependencies of every release and dependency.
+     */
+    @Param({"3"})
+    public int width;
+
+    private String manifest;
+    private String batchManifest;
+    private String mcVersion;
+
+    @Setup
+    public void setup() throws IOException {
+        // The release entry in the middle, so half of the versions are skipped before it.
+        mcVersion = "1." + (mcVersions / 2);
+        manifest = generateManifest();
+
+        StringWriter batch = new StringWriter();
+        batch.append("{\"check_interval\": 600, \"mods\": {");
+        for (int i = 0; i < 20; i++) {
+            batch.append(i == 0 ? "" : ",").append("\"mod").append(Integer.toString(i)).append("\": ").append(manifest);
+        }
+        batch.append("}}");
+        batchManifest = batch.toString();
+    }
+
+    private String generateManifest() throws IOException {
+        StringWriter body = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(body)) {
+            writer.beginObject();
+            writer.name("check_interval").value(600);
+            writer.name("mc_versions").beginObject();
+            for (int i = 0; i < mcVersions; i++) {
+                writer.name("1." + i).beginObject();
+                for (String channel : new String[]{"stable", "unstable"}) {
+                    writer.name(channel).beginObject();
+                    writer.name("version").value("2.0." + i + "-release1");
+                    writer.name("download").value("https://example.com/mod/1." + i + "/" + channel + ".jar");
+                    writer.name("sha256").value("0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef");
+                    writer.name("size").value(1048576);
+                    writeDependencies(writer, "dep", depth);
+                    writer.endObject();
+                }
+                writer.endObject();
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+        return body.toString();
+    }
+
+    private void writeDependencies(JsonWriter writer, String prefix, int levels) throws IOException {
+        if (levels == 0) {
+            return;
+        }
+        writer.name("dependencies").beginObject();
+        for (int i = 0; i < width; i++) {
+            String modId = prefix + "_" + i;
+            writer.name(modId).beginObject();
+            writer.name("name").value(modId);
+            writer.name("download").value("https://example.com/" + modId + ".jar");
+            writeDependencies(writer, modId, levels - 1);
+            writer.endObject();
+        }
+        writer.endObject();
+    }
+
+    @Benchmark
+    public ManifestRelease parse() throws IOException {
+        return ManifestParser.parse(new StringReader(manifest), mcVersion, CHANNEL);
+    }
+
+    @Benchmark
+    public Map<String, ManifestRelease> parseBatch() throws IOException {
+        return ManifestParser.parseBatch(new StringReader(batchManifest), mcVersion, CHANNEL);
+    }
+}
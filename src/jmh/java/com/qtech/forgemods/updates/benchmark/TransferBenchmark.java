@@ -0,0 +1,83 @@
+package com.qtech.forgemods.updates.benchmark;
+
+import com.qtech.forgemods.updates.download.TransferEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The download copy loop, between local files so the network doesn't count.
+ *
+ * @author Qboi123
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransferBenchmark {
+    /**
+     * Size of the file, in KiB.
+     */
+    @Param({"1024", "16384"})
+    public int sizeKiB;
+
+    /**
+     * Amount of bytes between progress updates.
+     */
+    @Param({"8192", "65536"})
+    public int chunkSize;
+
+    private Path directory;
+    private Path source;
+    private Path target;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("qfm-transfer");
+        source = directory.resolve("source.jar");
+        target = directory.resolve("target.jar");
+
+        byte[] data = new byte[sizeKiB * 1024];
+        new Random(0).nextBytes(data);
+        Files.write(source, data);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public long transferStream() throws IOException {
+        try (InputStream inputStream = Files.newInputStream(source);
+             FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return TransferEngine.transfer(inputStream, channel, 0, -1, chunkSize, read -> {
+            });
+        }
+    }
+
+    @Benchmark
+    public long transferChannel() throws IOException {
+        try (FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return TransferEngine.transfer(sourceChannel, channel, 0, sourceChannel.size(), chunkSize, read -> {
+            });
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.qtech.forgemods.updates.benchmark;
+
+import com.qtech.forgemods.core.QFMVersion;
+import com.qtech.forgemods.updates.AbstractUpdater;
+import com.qtech.forgemods.updates.harness.StandInServer;
+import com.qtech.forgemods.updates.harness.StandInUpdater;
+import net.minecraftforge.fml.loading.FMLPaths;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Version check through {@link AbstractUpdater#hasUpdate()}, as done by every update button and toast on every frame.
+ * The updater is checked once against a local {@link StandInServer} during setup, so it has a latest version to compare with.
+ * The bare version comparison and parsing are measured as well, as a baseline.
+ *
+ * @author Qboi123
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VersionBenchmark {
+    private static final String CURRENT_VERSION = "2.0.1363-beta6";
+    private static final String LATEST_VERSION = "2.0.1400-release1";
+
+    private StandInServer server;
+    private StandInUpdater updater;
+    private QFMVersion current;
+    private QFMVersion latest;
+
+    @Setup
+    public void setup() throws IOException {
+        // The manifest cache lives in the game directory.
+        FMLPaths.loadAbsolutePaths(Files.createTempDirectory("qfm-benchmark"));
+
+        server = new StandInServer(1, 1024, LATEST_VERSION);
+        server.start();
+        String modId = StandInServer.getModId(0);
+        updater = new StandInUpdater(server.getManifestUrl(modId), modId, CURRENT_VERSION, null, false);
+        AbstractUpdater.UpdateInfo updateInfo = updater.checkForUpdates();
+        if (updateInfo.getStatus() != AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE) {
+            throw new IllegalStateException("Stand-in update check failed: " + updateInfo.getStatus(), updateInfo.getThrowable());
+        }
+
+        current = new QFMVersion(CURRENT_VERSION);
+        latest = new QFMVersion(LATEST_VERSION);
+    }
+
+    @TearDown
+    public void tearDown() {
+        AbstractUpdater.unregister(updater);
+        server.close();
+    }
+
+    @Benchmark
+    public boolean hasUpdate() {
+        return updater.hasUpdate();
+    }
+
+    @Benchmark
+    public boolean compare() {
+        return current.compareTo(latest) < 0;
+    }
+
+    @Benchmark
+    public boolean parseAndCompare() {
+        return new QFMVersion(CURRENT_VERSION).compareTo(new QFMVersion(LATEST_VERSION)) < 0;
+    }
+}
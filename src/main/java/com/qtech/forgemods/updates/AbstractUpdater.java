@@ -1,12 +1,16 @@
 package com.qtech.forgemods.updates;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonParseException;
 import com.qtech.forgemods.core.QFMCore;
 import com.qtech.forgemods.core.QFMVersion;
 import com.qtech.forgemods.core.common.interfaces.IVersion;
+import com.qtech.forgemods.updates.jfr.UpdateEvent;
+import com.qtech.forgemods.updates.jfr.UpdateEvents;
+import com.qtech.forgemods.updates.manifest.ManifestCache;
+import com.qtech.forgemods.updates.manifest.ManifestFetcher;
+import com.qtech.forgemods.updates.manifest.ManifestRelease;
+import com.qtech.forgemods.updates.metrics.UpdateMetrics;
+import com.qtech.forgemods.updates.net.RateLimitedException;
 import net.minecraft.client.Minecraft;
 import net.minecraftforge.fml.ModContainer;
 import net.minecraftforge.fml.ModList;
@@ -17,15 +21,16 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * An abstract updater used for checking for updates.
@@ -37,15 +42,15 @@ import java.util.Map;
  */
 @SuppressWarnings("unused")
 public abstract class AbstractUpdater<T extends IVersion> {
-    private static final List<AbstractUpdater<?>> INSTANCES = new ArrayList<>();
-    private static final Map<String, AbstractUpdater<?>> MOD_UPDATER_MAP = new HashMap<>();
+    private static final List<AbstractUpdater<?>> INSTANCES = new CopyOnWriteArrayList<>();
+    private static final List<AbstractUpdater<?>> INSTANCE_VIEW = Collections.unmodifiableList(INSTANCES);
+    private static final Map<String, AbstractUpdater<?>> MOD_UPDATER_MAP = new ConcurrentHashMap<>();
     public static boolean DEBUG = true;
     private final URL updateUrl;
-    private final ModContainer modContainer;
-    private T latestVersion = null;
-    private URL releaseUrl;
-    private Dependencies dependencies = new Dependencies();
-    private Release release;
+    private final IModInfo modInfo;
+    // Checks run off the main thread, so the results of a check are published at once.
+    private volatile Latest<T> latest = new Latest<>(null, null, new Dependencies(), null, -1, -1);
+    private final AtomicReference<UpdateStatus> lastStatus = new AtomicReference<>();
 
     /**
      * Get a mod container from an instance of an {@link Mod @Mod} annotated class.
@@ -73,6 +78,26 @@ public abstract class AbstractUpdater<T extends IVersion> {
     }
 
     public AbstractUpdater(URL url, String modId) {
+        this(url, getModInfoFromId(modId));
+    }
+
+    /**
+     * Abstract updater: constructor.
+     * Doesn't look up the mod in the mod list, so updaters can be created outside of a running game, like in load tests.
+     *
+     * @param url the update manifest url.
+     * @param modInfo the information of the mod to update.
+     */
+    protected AbstractUpdater(URL url, IModInfo modInfo) {
+        this.modInfo = modInfo;
+        this.updateUrl = url;
+
+        // Updaters are created during parallel mod loading, so the registry is thread-safe.
+        INSTANCES.add(this);
+        MOD_UPDATER_MAP.put(modInfo.getModId(), this);
+    }
+
+    private static IModInfo getModInfoFromId(String modId) {
         String modIdRepr = modId
                 .replaceAll("\n", "\\n")
                 .replaceAll("\r", "\\r")
@@ -80,11 +105,7 @@ public abstract class AbstractUpdater<T extends IVersion> {
                 .replaceAll("\"", "\\\"")
                 .replaceAll("\\\\", "\\\\");
         IllegalArgumentException illegalArgumentException = new IllegalArgumentException("Mod with id \"" + modIdRepr + "\" not found.");
-        this.modContainer = ModList.get().getModContainerById(modId).orElseThrow(() -> illegalArgumentException);
-        this.updateUrl = url;
-        
-        INSTANCES.add(this);
-        MOD_UPDATER_MAP.put(modId, this);
+        return ModList.get().getModContainerById(modId).orElseThrow(() -> illegalArgumentException).getModInfo();
     }
 
     ///////////////
@@ -102,6 +123,7 @@ public abstract class AbstractUpdater<T extends IVersion> {
 
     /**
      * Get all updater instances.
+     * Copies the registry into a new array, use {@link #getInstanceList()} for iterating.
      *
      * @return all the updater instances in an array.
      */
@@ -109,6 +131,27 @@ public abstract class AbstractUpdater<T extends IVersion> {
         return INSTANCES.toArray(new AbstractUpdater[0]);
     }
 
+    /**
+     * Get all updater instances, as a read only view of the registry.
+     * Iterating the view doesn't copy, and sees a snapshot of the registry from when the iteration started.
+     *
+     * @return all the updater instances.
+     */
+    public static List<AbstractUpdater<?>> getInstanceList() {
+        return INSTANCE_VIEW;
+    }
+
+    /**
+     * Remove an updater from the registry, it won't be checked for updates anymore.
+     *
+     * @param updater the updater to remove.
+     * @return true if the updater was registered.
+     */
+    public static boolean unregister(AbstractUpdater<?> updater) {
+        MOD_UPDATER_MAP.remove(updater.getModInfo().getModId(), updater);
+        return INSTANCES.remove(updater);
+    }
+
     /**
      * Get the updater associated with an mod-ID.
      *
@@ -123,7 +166,7 @@ public abstract class AbstractUpdater<T extends IVersion> {
     // Urls. //
     ///////////
     public URL getReleaseUrl() {
-        return releaseUrl;
+        return latest.releaseUrl;
     }
 
     public URL getUpdateFileUrl() {
@@ -157,7 +200,7 @@ public abstract class AbstractUpdater<T extends IVersion> {
      */
     @Nullable
     public T getLatestVersion() {
-        return latestVersion;
+        return latest.version;
     }
 
     ///////////////
@@ -169,7 +212,7 @@ public abstract class AbstractUpdater<T extends IVersion> {
      * @return the mod information.
      */
     public IModInfo getModInfo() {
-        return modContainer.getModInfo();
+        return modInfo;
     }
 
     /////////////////////////////////
@@ -183,6 +226,7 @@ public abstract class AbstractUpdater<T extends IVersion> {
      * @return true if there's an update available, false otherwise.
      */
     public boolean hasUpdate() {
+        T latestVersion = latest.version;
         return latestVersion != null && getCurrentModVersion().compareTo(latestVersion) < 0;
     }
 
@@ -191,7 +235,7 @@ public abstract class AbstractUpdater<T extends IVersion> {
      * @return true if the given version is up to date, false otherwise.
      */
     public boolean isUpToDate(T version) {
-        return version.compareTo(latestVersion) < 0;
+        return version.compareTo(latest.version) < 0;
     }
 
     /**
@@ -202,103 +246,287 @@ public abstract class AbstractUpdater<T extends IVersion> {
      */
     @NotNull
     public UpdateInfo checkForUpdates() {
+        long start = System.nanoTime();
+        UpdateEvent event = UpdateEvents.beginCheck(getModInfo().getModId(), updateUrl);
+        UpdateInfo updateInfo;
         try {
-            // Get minecraft version.
-            String id = Minecraft.getInstance().getMinecraftGame().getVersion().getId();
+            updateInfo = fetchUpdate();
+        } catch (RuntimeException e) {
+            // The check event must end, and the result must be recorded, whatever the manifest contains.
+            updateInfo = new UpdateInfo(UpdateStatus.INCOMPATIBLE, e);
+        }
+        UpdateEvents.endCheck(event, updateInfo.getStatus().name());
+        UpdateMetrics.get().recordCheck(getModInfo().getModId(), updateInfo.getStatus().name(), System.nanoTime() - start);
+        logResult(updateInfo);
+        return updateInfo;
+    }
 
-            // Open update url.
-            InputStream inputStream = updateUrl.openStream();
-            Reader targetReader = new InputStreamReader(inputStream);
+    /**
+     * Log a failed check, at warn when the status changed, at debug when it repeats.
+     * Offline and rate limit state changes are logged by the http client instead, once per host.
+     *
+     * @param updateInfo the update information of the check.
+     */
+    void logResult(UpdateInfo updateInfo) {
+        UpdateStatus status = updateInfo.getStatus();
+        UpdateStatus previous = lastStatus.getAndSet(status);
+        if (updateInfo.getThrowable() == null || status == UpdateStatus.OFFLINE || status == UpdateStatus.RATE_LIMITED) {
+            return;
+        }
 
-            // Get update information.
-            Gson gson = new Gson();
-            try {
-                // Get Minecraft versions.
-                JsonObject mcVersions = gson.fromJson(targetReader, JsonObject.class).get("mc_versions").getAsJsonObject();
-                if (DEBUG) {
-                    QFMCore.LOGGER.debug("===================================================");
-                    QFMCore.LOGGER.debug("Update Data:");
-                    QFMCore.LOGGER.debug("---------------------------------------------------");
-                    QFMCore.LOGGER.debug(mcVersions.toString());
-                    QFMCore.LOGGER.debug("===================================================");
-                }
-
-                // Get latest Mod version.
-                JsonObject versionIndex = mcVersions.getAsJsonObject(id);
-                JsonObject releaseIndex = versionIndex.getAsJsonObject(QFMCore.version.isStable() ? "stable" : "unstable");
-                JsonPrimitive latestJson = releaseIndex.getAsJsonPrimitive("version");
-
-                // Get version download url.
-                JsonPrimitive downloadJson = releaseIndex.getAsJsonPrimitive("download");
-                if (releaseIndex.has("dependencies")) {
-                    JsonObject dependenciesJson = releaseIndex.getAsJsonObject("dependencies");
-                    this.dependencies = getDependencies(dependenciesJson);
-                }
-                T latestVersion = parseVersion(latestJson.getAsString());
-                URL url = new URL(downloadJson.getAsString());
-
-                // Assign values to fields.
-                this.latestVersion = latestVersion;
-                this.releaseUrl = url;
-
-                this.release = new Release(this, modContainer.getModInfo().getDisplayName(), url, this.dependencies);
-
-                // Check if up to date.
-                if (getCurrentModVersion().compareTo(latestVersion) < 0) {
-                    // Close reader and stream.
-                    targetReader.close();
-                    inputStream.close();
-
-                    // Return information, there's an update available.
-                    return new UpdateInfo(UpdateStatus.UPDATE_AVAILABLE, null);
-                }
-
-                // Close reader and stream.
-                targetReader.close();
-                inputStream.close();
-
-                // Return information, it's up to date.
-                return new UpdateInfo(UpdateStatus.UP_TO_DATE, null);
-            } catch (IllegalStateException | NullPointerException | IOException | IllegalArgumentException e) {
-                // There went something wrong.
-                return new UpdateInfo(UpdateStatus.INCOMPATIBLE, e);
-            }
+        String message = "Update check for " + getModInfo().getModId() + " failed (" + status + "): " + updateInfo.getThrowable();
+        if (previous != status) {
+            QFMCore.LOGGER.warn(message);
+        } else {
+            QFMCore.LOGGER.debug(message);
+        }
+    }
+
+    @NotNull
+    private UpdateInfo fetchUpdate() {
+        // Fetch the update data, shared with other updaters using the same url.
+        ManifestCache.Entry manifest;
+        try {
+            manifest = ManifestFetcher.get().fetch(updateUrl);
+        } catch (RateLimitedException e) {
+            // The server asked to slow down, the check schedule waits as long as asked.
+            return new UpdateInfo(UpdateStatus.RATE_LIMITED, e);
         } catch (IOException e) {
             // The server / computer if offline.
             return new UpdateInfo(UpdateStatus.OFFLINE, e);
         }
+
+        // Get the release for the current Minecraft version and channel.
+        ManifestRelease manifestRelease;
+        try {
+            manifestRelease = manifest.getRelease(getMinecraftVersion(), getChannel());
+        } catch (IllegalStateException | IOException e) {
+            // Not valid json, fetch it without revalidating next time.
+            ManifestCache.get().invalidate(updateUrl);
+            return new UpdateInfo(UpdateStatus.INCOMPATIBLE, e);
+        } catch (RuntimeException e) {
+            // Missing fields, or values of the wrong type.
+            return new UpdateInfo(UpdateStatus.INCOMPATIBLE, e);
+        }
+        return applyRelease(manifestRelease);
     }
 
-    private Dependencies getDependencies(JsonObject dependenciesJson) throws MalformedURLException {
-        Dependencies dependencies = new Dependencies();
+    /**
+     * Update the latest version, release and dependencies from a release entry.
+     * Used by {@link #checkForUpdates()}, and by the {@link UpdateCheckEngine} for releases from a batch manifest.
+     *
+     * @param manifestRelease the release entry, or null if the (batch) manifest doesn't have one for this mod.
+     * @return the update information.
+     */
+    @NotNull
+    UpdateInfo applyRelease(@Nullable ManifestRelease manifestRelease) {
+        UpdateEvent event = UpdateEvents.beginPhase(UpdateEvents.COMPARE, updateUrl.getHost());
+        UpdateInfo updateInfo = compareRelease(manifestRelease);
+        event.setStatus(updateInfo.getStatus().name());
+        event.commit();
+        return updateInfo;
+    }
 
-        for (Map.Entry<String, JsonElement> entry : dependenciesJson.entrySet()) {
-            String modId = entry.getKey();
-            JsonElement dependencyJson = entry.getValue();
+    @NotNull
+    private UpdateInfo compareRelease(@Nullable ManifestRelease manifestRelease) {
+        if (manifestRelease == null) {
+            return new UpdateInfo(UpdateStatus.INCOMPATIBLE, new JsonParseException("No " + getChannel() + " release of " + getModInfo().getModId() + " for Minecraft " + getMinecraftVersion()));
+        }
 
-            if (dependencyJson instanceof JsonObject) {
-                JsonObject dependencyObject = (JsonObject) dependencyJson;
-                URL download = new URL(dependencyObject.getAsJsonPrimitive("download").getAsString());
-                String name = dependencyObject.getAsJsonPrimitive("name").getAsString();
-                if (dependencyObject.has("dependencies")) {
-                    Dependencies subDependencies = getDependencies(dependencyObject.getAsJsonObject("dependencies"));
-                    dependencies.add(new Dependency(modId, name, download, subDependencies));
-                    continue;
-                }
-                dependencies.add(new Dependency(modId, name, download));
+        // Get update information.
+        try {
+            if (DEBUG) {
+                QFMCore.LOGGER.debug("Update data for " + getModInfo().getModId() + ": " + manifestRelease);
             }
+
+            // Get latest Mod version, download url and dependencies.
+            T latestVersion = parseVersion(manifestRelease.getVersion());
+            URL url = manifestRelease.getDownload();
+
+            // Publish the values at once, readers never see a new version with an old release.
+            Dependencies dependencies = manifestRelease.getDependencies();
+            Release release = new Release(this, modInfo.getDisplayName(), url, dependencies, manifestRelease.getSha256(), manifestRelease.getSize());
+            this.latest = new Latest<>(latestVersion, url, dependencies, release, manifestRelease.getCheckInterval(), manifestRelease.getRolloutSpread());
+
+            // Check if up to date.
+            if (getCurrentModVersion().compareTo(latestVersion) < 0) {
+                // Return information, there's an update available.
+                return new UpdateInfo(UpdateStatus.UPDATE_AVAILABLE, null);
+            }
+
+            // Return information, it's up to date.
+            return new UpdateInfo(UpdateStatus.UP_TO_DATE, null);
+        } catch (IllegalStateException | NullPointerException | IllegalArgumentException | JsonParseException e) {
+            // There went something wrong.
+            return new UpdateInfo(UpdateStatus.INCOMPATIBLE, e);
         }
+    }
 
-        dependencies.lock();
-        return dependencies;
+    /**
+     * Get the id of the Minecraft version to select the release entry for.
+     * The running Minecraft version by default.
+     *
+     * @return the Minecraft version id.
+     */
+    protected String getMinecraftVersion() {
+        return Minecraft.getInstance().getMinecraftGame().getVersion().getId();
+    }
+
+    /**
+     * Get if the release entry is selected from the stable channel.
+     * Follows QForgeMod's own version by default.
+     *
+     * @return true for the {@code stable} channel, false for the {@code unstable} channel.
+     */
+    protected boolean isStableChannel() {
+        return QFMCore.version.isStable();
+    }
+
+    /**
+     * Get the release channel, used to select the release entry.
+     *
+     * @return {@code stable} or {@code unstable}.
+     */
+    final String getChannel() {
+        return isStableChannel() ? "stable" : "unstable";
+    }
+
+    /**
+     * Check for updates without blocking, on the executor of the {@link UpdateCheckEngine}.
+     *
+     * @return a future completing with the update information.
+     * @see #checkForUpdatesAsync(Executor)
+     */
+    @NotNull
+    public CompletableFuture<UpdateInfo> checkForUpdatesAsync() {
+        return checkForUpdatesAsync(UpdateCheckEngine.get().getExecutor());
+    }
+
+    /**
+     * Check for updates without blocking.
+     * The future never completes exceptionally, failures are reported through the update information like {@link #checkForUpdates()} does.
+     *
+     * @param executor the executor to run the check on.
+     * @return a future completing with the update information.
+     */
+    @NotNull
+    public CompletableFuture<UpdateInfo> checkForUpdatesAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return checkForUpdates();
+            } catch (RuntimeException e) {
+                UpdateInfo updateInfo = new UpdateInfo(UpdateStatus.INCOMPATIBLE, e);
+                logResult(updateInfo);
+                return updateInfo;
+            }
+        }, executor);
+    }
+
+    /**
+     * Check all updaters for updates in parallel, on the executor of the {@link UpdateCheckEngine}.
+     *
+     * @return a future completing with the update information of every updater, once all checks are done.
+     * @see #checkAll(Executor)
+     */
+    @NotNull
+    public static CompletableFuture<Map<AbstractUpdater<?>, UpdateInfo>> checkAll() {
+        return checkAll(UpdateCheckEngine.get().getExecutor());
+    }
+
+    /**
+     * Check all updaters for updates in parallel.
+     *
+     * @param executor the executor to run the checks on.
+     * @return a future completing with the update information of every updater, once all checks are done.
+     */
+    @NotNull
+    public static CompletableFuture<Map<AbstractUpdater<?>, UpdateInfo>> checkAll(Executor executor) {
+        AbstractUpdater<?>[] updaters = INSTANCES.toArray(new AbstractUpdater[0]);
+        @SuppressWarnings("unchecked")
+        CompletableFuture<UpdateInfo>[] futures = new CompletableFuture[updaters.length];
+        for (int i = 0; i < updaters.length; i++) {
+            futures[i] = updaters[i].checkForUpdatesAsync(executor);
+        }
+
+        return CompletableFuture.allOf(futures).thenApply(ignored -> {
+            Map<AbstractUpdater<?>, UpdateInfo> results = new HashMap<>();
+            for (int i = 0; i < updaters.length; i++) {
+                results.put(updaters[i], futures[i].join());
+            }
+            return results;
+        });
     }
 
     public Dependencies getDependencies() {
-        return dependencies;
+        return latest.dependencies;
     }
 
     public Release getRelease() {
-        return release;
+        return latest.release;
+    }
+
+    /**
+     * Get the batch manifest url, to check this updater together with other updaters using the same url in a single request.
+     * Override this when the mod's manifest is also served by a batch endpoint.
+     *
+     * @return the batch manifest url, or null to only use the update url.
+     * @see com.qtech.forgemods.updates.manifest.BatchManifest
+     */
+    @Nullable
+    public URL getBatchUrl() {
+        return null;
+    }
+
+    /**
+     * Check if the batch endpoint is requested with a POST listing the mod ids and current versions, instead of a GET.
+     *
+     * @return true to POST to the batch url, false to GET it.
+     */
+    public boolean isBatchPost() {
+        return false;
+    }
+
+    /**
+     * Get the check interval the update manifest asks for.
+     *
+     * @return the minimum time between update checks in seconds, or -1 if the manifest doesn't provide it.
+     * @see CheckSchedule
+     */
+    public long getCheckInterval() {
+        return latest.checkInterval;
+    }
+
+    /**
+     * Get the rollout spread the update manifest asks for.
+     *
+     * @return the time to spread the roll out of a new release over in seconds, or -1 if the manifest doesn't provide it.
+     * @see CheckSchedule#getRolloutDelay(AbstractUpdater)
+     */
+    public long getRolloutSpread() {
+        return latest.rolloutSpread;
+    }
+
+    /**
+     * The results of the last successful check, read only.
+     *
+     * @param <T> an implementation of {@link IVersion}.
+     */
+    private static final class Latest<T extends IVersion> {
+        private final T version;
+        private final URL releaseUrl;
+        private final Dependencies dependencies;
+        private final Release release;
+        private final long checkInterval;
+        private final long rolloutSpread;
+
+        Latest(@Nullable T version, @Nullable URL releaseUrl, Dependencies dependencies, @Nullable Release release, long checkInterval, long rolloutSpread) {
+            this.version = version;
+            this.releaseUrl = releaseUrl;
+            this.dependencies = dependencies;
+            this.release = release;
+            this.checkInterval = checkInterval;
+            this.rolloutSpread = rolloutSpread;
+        }
     }
 
     /**
@@ -307,7 +535,7 @@ public abstract class AbstractUpdater<T extends IVersion> {
      * @author Qboi123
      */
     public enum UpdateStatus {
-        INCOMPATIBLE, OFFLINE, UPDATE_AVAILABLE, UP_TO_DATE
+        INCOMPATIBLE, OFFLINE, RATE_LIMITED, UPDATE_AVAILABLE, UP_TO_DATE
     }
 
     /**
@@ -330,9 +558,6 @@ public abstract class AbstractUpdater<T extends IVersion> {
         public UpdateInfo(UpdateStatus status, Throwable throwable) {
             this.status = status;
             this.throwable = throwable;
-            if (throwable != null) {
-                throwable.printStackTrace();
-            }
         }
 
         /**
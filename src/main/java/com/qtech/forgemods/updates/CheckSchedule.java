@@ -0,0 +1,215 @@
+package com.qtech.forgemods.updates;
+
+import com.qtech.forgemods.updates.net.RateLimitedException;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Per updater update check schedule.
+ * Every updater has its own next due time, instead of checking all updaters on the same tick:
+ * <ul>
+ *     <li>Failed checks ({@link AbstractUpdater.UpdateStatus#OFFLINE OFFLINE} or {@link AbstractUpdater.UpdateStatus#INCOMPATIBLE INCOMPATIBLE})
+ *     back off exponentially, starting at the failure interval.</li>
+ *     <li>Checks with the same result as the previous check back off exponentially, starting at the base interval.</li>
+ *     <li>Rate limited checks ({@link AbstractUpdater.UpdateStatus#RATE_LIMITED RATE_LIMITED}) back off like failures,
+ *     but never check again before the host's {@code Retry-After} time.</li>
+ *     <li>The manifest's {@code check_interval} (in seconds) is the minimum time between two successful checks.</li>
+ *     <li>Every interval gets random jitter, so clients started at the same time don't check at the same time.</li>
+ *     <li>The first check of an updater is at a random moment within the start spread, so clients don't all check right after starting.</li>
+ * </ul>
+ * The schedule also picks the moment to act on a new release, within the manifest's {@code rollout_spread}.
+ *
+ * @author Qboi123
+ */
+public class CheckSchedule {
+    public static final long DEFAULT_BASE_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+    public static final long DEFAULT_MAX_INTERVAL = TimeUnit.HOURS.toMillis(1);
+    public static final long DEFAULT_FAILURE_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    public static final long DEFAULT_MAX_FAILURE_INTERVAL = TimeUnit.MINUTES.toMillis(30);
+    public static final double DEFAULT_JITTER = 0.1;
+    public static final long DEFAULT_START_SPREAD = TimeUnit.SECONDS.toMillis(30);
+
+    private static final int MAX_DOUBLINGS = 16;
+
+    private final Map<AbstractUpdater<?>, Entry> entries = new ConcurrentHashMap<>();
+    private final long baseInterval;
+    private final long maxInterval;
+    private final long failureInterval;
+    private final long maxFailureInterval;
+    private final double jitter;
+    private final long startSpread;
+    private final Random random;
+    private final LongSupplier clock;
+
+    /**
+     * Check schedule: constructor.
+     * Uses the default intervals, jitter and start spread.
+     */
+    public CheckSchedule() {
+        this(DEFAULT_BASE_INTERVAL, DEFAULT_MAX_INTERVAL, DEFAULT_FAILURE_INTERVAL, DEFAULT_MAX_FAILURE_INTERVAL, DEFAULT_JITTER, DEFAULT_START_SPREAD, new Random(), () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    /**
+     * Check schedule: constructor.
+     *
+     * @param baseInterval the interval after a check with a new result, in milliseconds.
+     * @param maxInterval the maximum interval while the result doesn't change, in milliseconds.
+     * @param failureInterval the interval after the first failed check, in milliseconds.
+     * @param maxFailureInterval the maximum interval while the checks fail, in milliseconds.
+     * @param jitter the random jitter, as a fraction of the interval (0.1 is ±10%).
+     * @param startSpread the time to spread the first checks over, in milliseconds, 0 to check right away.
+     * @param random the random used for the jitter and spreads.
+     * @param clock the monotonic clock, in milliseconds.
+     */
+    public CheckSchedule(long baseInterval, long maxInterval, long failureInterval, long maxFailureInterval, double jitter, long startSpread, Random random, LongSupplier clock) {
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("Jitter must be at least 0 and less than 1.");
+        }
+        this.baseInterval = baseInterval;
+        this.maxInterval = Math.max(baseInterval, maxInterval);
+        this.failureInterval = failureInterval;
+        this.maxFailureInterval = Math.max(failureInterval, maxFailureInterval);
+        this.jitter = jitter;
+        this.startSpread = Math.max(0, startSpread);
+        this.random = random;
+        this.clock = clock;
+    }
+
+    /**
+     * Check if an updater is due for an update check.
+     * Updaters that weren't seen before get their first check at a random moment within the start spread.
+     *
+     * @param updater the updater.
+     * @return true if the updater should be checked now.
+     */
+    public boolean isDue(AbstractUpdater<?> updater) {
+        return clock.getAsLong() >= getEntry(updater).nextDue;
+    }
+
+    private Entry getEntry(AbstractUpdater<?> updater) {
+        return entries.computeIfAbsent(updater, u -> {
+            Entry entry = new Entry();
+            entry.nextDue = clock.getAsLong() + (long) (startSpread * nextDouble());
+            return entry;
+        });
+    }
+
+    /**
+     * Schedule the next check of an updater, based on the result of the last check.
+     *
+     * @param updater the updater that was checked.
+     * @param updateInfo the result of the check.
+     * @return the delay until the next check, in milliseconds.
+     */
+    public long onChecked(AbstractUpdater<?> updater, AbstractUpdater.UpdateInfo updateInfo) {
+        Entry entry = getEntry(updater);
+        AbstractUpdater.UpdateStatus status = updateInfo.getStatus();
+
+        long interval;
+        long minimum = 0;
+        if (status == AbstractUpdater.UpdateStatus.OFFLINE || status == AbstractUpdater.UpdateStatus.INCOMPATIBLE || status == AbstractUpdater.UpdateStatus.RATE_LIMITED) {
+            entry.failures++;
+            entry.unchanged = 0;
+            interval = backoff(failureInterval, maxFailureInterval, entry.failures - 1);
+            if (updateInfo.getThrowable() instanceof RateLimitedException) {
+                minimum = ((RateLimitedException) updateInfo.getThrowable()).getRetryAfter();
+            }
+        } else {
+            String latest = Objects.toString(updater.getLatestVersion(), null);
+            if (entry.failures == 0 && status == entry.status && Objects.equals(latest, entry.latest)) {
+                entry.unchanged++;
+            } else {
+                entry.unchanged = 0;
+            }
+            entry.failures = 0;
+            entry.latest = latest;
+            interval = backoff(baseInterval, maxInterval, entry.unchanged);
+
+            // The server knows best how often its manifest changes.
+            long checkInterval = updater.getCheckInterval();
+            if (checkInterval > 0) {
+                interval = Math.max(interval, TimeUnit.SECONDS.toMillis(checkInterval));
+            }
+        }
+        entry.status = status;
+
+        // Jitter is only added on top of a Retry-After, so clients behind the same address don't all come back at once.
+        interval = Math.max(applyJitter(interval), minimum + (long) (minimum * jitter * nextDouble()));
+        entry.nextDue = clock.getAsLong() + interval;
+        return interval;
+    }
+
+    private static long backoff(long interval, long max, int doublings) {
+        return Math.min(max, interval << Math.min(doublings, MAX_DOUBLINGS));
+    }
+
+    private long applyJitter(long interval) {
+        if (jitter == 0) {
+            return interval;
+        }
+        return (long) (interval * (1 + jitter * (nextDouble() * 2 - 1)));
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    /**
+     * Get the time until an updater is due.
+     *
+     * @param updater the updater.
+     * @return the delay in milliseconds, 0 if the updater is due now.
+     */
+    public long getDelay(AbstractUpdater<?> updater) {
+        return Math.max(0, getEntry(updater).nextDue - clock.getAsLong());
+    }
+
+    /**
+     * Pick the delay before acting on a new release of an updater, like notifying about it.
+     * A random moment within the manifest's rollout spread, so not every client downloads a new release at once.
+     *
+     * @param updater the updater with a new release.
+     * @return the delay in milliseconds, 0 if the manifest has no rollout spread.
+     * @see AbstractUpdater#getRolloutSpread()
+     */
+    public long getRolloutDelay(AbstractUpdater<?> updater) {
+        long rolloutSpread = updater.getRolloutSpread();
+        if (rolloutSpread <= 0) {
+            return 0;
+        }
+        return (long) (TimeUnit.SECONDS.toMillis(rolloutSpread) * nextDouble());
+    }
+
+    /**
+     * Get the current time of the schedule's clock.
+     *
+     * @return the monotonic time, in milliseconds.
+     */
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Forget an updater, it's scheduled like a new updater again.
+     *
+     * @param updater the updater.
+     */
+    public void reset(AbstractUpdater<?> updater) {
+        entries.remove(updater);
+    }
+
+    private static class Entry {
+        private long nextDue;
+        private int failures;
+        private int unchanged;
+        private AbstractUpdater.UpdateStatus status;
+        private String latest;
+    }
+}
@@ -5,91 +5,188 @@ import org.jetbrains.annotations.NotNull;
 import java.util.*;
 import java.util.function.Predicate;
 
-public class Dependencies extends HashSet<Dependency> {
-    private boolean locked = false;
+/**
+ * Set of dependencies, read only once locked.
+ * Locking replaces the backing hash set with a compact array, and precomputes the hash code.
+ * The flattened dependencies of a locked set are computed on first use, and kept.
+ *
+ * @author Qboi123
+ */
+public class Dependencies extends AbstractSet<Dependency> {
+    private static final Dependency[] EMPTY = new Dependency[0];
+
+    private HashSet<Dependency> set;
+    private Dependency[] elements;
+    private volatile Set<Dependency> all;
+    private int hash;
+    private volatile boolean locked = false;
 
     public Dependencies(int initialCapacity) {
-        super(initialCapacity);
+        this.set = new HashSet<>(initialCapacity);
     }
 
     public Dependencies() {
+        this.set = new HashSet<>();
     }
 
     public Dependencies(@NotNull Collection<? extends Dependency> c) {
-        super(c);
+        this.set = new HashSet<>(c);
     }
 
     public Dependencies(Dependency... dependencies) {
-        super(Arrays.asList(dependencies));
+        this.set = new HashSet<>(Arrays.asList(dependencies));
     }
 
+    /**
+     * Get these dependencies and all of their dependencies, once per mod id.
+     * Computed once when locked, computed on every call before that.
+     *
+     * @return the flattened dependencies, each one after its own dependencies.
+     * @see DependencyResolver
+     */
     public Set<Dependency> getAll() {
-        Set<Dependency> dependencySet = new HashSet<>();
+        if (!this.locked) {
+            return flatten();
+        }
 
-        for (Dependency dependency : this) {
-            dependencySet.add(dependency);
-            dependencySet.addAll(dependency.getDependencies().getAll());
+        // Not computed in lock(), the parser locks every level of a tree, and most levels are never flattened.
+        Set<Dependency> all = this.all;
+        if (all == null) {
+            all = flatten();
+            this.all = all;
         }
+        return all;
+    }
 
-        return Collections.unmodifiableSet(dependencySet);
+    private Set<Dependency> flatten() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(DependencyResolver.plan(this)));
     }
 
+    @NotNull
     @Override
-    public boolean addAll(Collection<? extends Dependency> c) {
-        if (this.locked) {
-            throw new IllegalStateException("Dependencies list is locked, making it read only.");
+    public Iterator<Dependency> iterator() {
+        if (!this.locked) {
+            return set.iterator();
         }
-        return super.addAll(c);
+        return new Iterator<Dependency>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < elements.length;
+            }
+
+            @Override
+            public Dependency next() {
+                if (index >= elements.length) {
+                    throw new NoSuchElementException();
+                }
+                return elements[index++];
+            }
+
+            @Override
+            public void remove() {
+                checkLocked();
+            }
+        };
     }
 
-    public boolean addAll(Dependencies c) {
-        if (this.locked) {
-            throw new IllegalStateException("Dependencies list is locked, making it read only.");
+    @Override
+    public int size() {
+        return this.locked ? elements.length : set.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!this.locked) {
+            return set.contains(o);
+        }
+        for (Dependency element : elements) {
+            if (element.equals(o)) {
+                return true;
+            }
         }
-        return super.addAll(c);
+        return false;
+    }
+
+    @Override
+    public boolean addAll(@NotNull Collection<? extends Dependency> c) {
+        checkLocked();
+        return set.addAll(c);
+    }
+
+    public boolean addAll(Dependencies c) {
+        checkLocked();
+        return set.addAll(c);
     }
 
     @Override
     public boolean add(Dependency dependency) {
-        if (this.locked) {
-            throw new IllegalStateException("Dependencies list is locked, making it read only.");
-        }
-        return super.add(dependency);
+        checkLocked();
+        return set.add(dependency);
     }
 
     @Override
     public void clear() {
-        if (this.locked) {
-            throw new IllegalStateException("Dependencies list is locked, making it read only.");
-        }
-        super.clear();
+        checkLocked();
+        set.clear();
     }
 
     @Override
     public boolean remove(Object o) {
-        if (this.locked) {
-            throw new IllegalStateException("Dependencies list is locked, making it read only.");
-        }
-        return super.remove(o);
+        checkLocked();
+        return set.remove(o);
     }
 
     @Override
-    public boolean removeAll(Collection<?> c) {
-        if (this.locked) {
-            throw new IllegalStateException("Dependencies list is locked, making it read only.");
-        }
-        return super.removeAll(c);
+    public boolean removeAll(@NotNull Collection<?> c) {
+        checkLocked();
+        return set.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(@NotNull Collection<?> c) {
+        checkLocked();
+        return set.retainAll(c);
     }
 
     @Override
     public boolean removeIf(Predicate<? super Dependency> filter) {
+        checkLocked();
+        return set.removeIf(filter);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (o instanceof Dependencies && this.locked && ((Dependencies) o).locked && hash != ((Dependencies) o).hash) {
+            return false;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.locked ? hash : super.hashCode();
+    }
+
+    private void checkLocked() {
         if (this.locked) {
             throw new IllegalStateException("Dependencies list is locked, making it read only.");
         }
-        return false;
     }
 
-    public void lock() {
+    /**
+     * Lock the dependencies, making them read only.
+     * The dependencies of the dependencies should be locked first, else the flattened dependencies won't see later changes to them.
+     */
+    public synchronized void lock() {
+        if (this.locked) {
+            return;
+        }
+        this.elements = set.isEmpty() ? EMPTY : set.toArray(new Dependency[0]);
+        this.hash = super.hashCode();
+        this.set = null;
         this.locked = true;
     }
 
@@ -1,5 +1,7 @@
 package com.qtech.forgemods.updates;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.net.URL;
 import java.util.Objects;
 
@@ -8,16 +10,29 @@ public class Dependency {
     private final String name;
     private final URL download;
     private final Dependencies dependencies;
+    private final String sha256;
+    private final long size;
+    private int hash;
 
     public Dependency(String modId, String name, URL download) {
         this(modId, name, download, new Dependencies());
     }
 
     public Dependency(String modId, String name, URL download, Dependencies dependencies) {
+        this(modId, name, download, dependencies, null);
+    }
+
+    public Dependency(String modId, String name, URL download, Dependencies dependencies, @Nullable String sha256) {
+        this(modId, name, download, dependencies, sha256, -1);
+    }
+
+    public Dependency(String modId, String name, URL download, Dependencies dependencies, @Nullable String sha256, long size) {
         this.modId = modId;
         this.name = name;
         this.download = download;
         this.dependencies = dependencies;
+        this.sha256 = sha256;
+        this.size = size;
     }
 
     public String getModId() {
@@ -36,6 +51,25 @@ public class Dependency {
         return dependencies;
     }
 
+    /**
+     * Get the SHA-256 hash of the download, from the optional {@code sha256} manifest field.
+     *
+     * @return the lowercase hex SHA-256 hash, or null if the manifest doesn't provide one.
+     */
+    @Nullable
+    public String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * Get the size of the download, from the optional {@code size} manifest field.
+     *
+     * @return the size in bytes, or -1 if the manifest doesn't provide it.
+     */
+    public long getSize() {
+        return size;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -46,6 +80,14 @@ public class Dependency {
 
     @Override
     public int hashCode() {
-        return Objects.hash(modId, download, dependencies);
+        // Cached once the dependencies are read only.
+        int h = hash;
+        if (h == 0) {
+            h = Objects.hash(modId, download, dependencies);
+            if (dependencies.isLocked()) {
+                hash = h;
+            }
+        }
+        return h;
     }
 }
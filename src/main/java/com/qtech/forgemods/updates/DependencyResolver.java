@@ -0,0 +1,135 @@
+package com.qtech.forgemods.updates;
+
+import com.qtech.forgemods.core.QFMCore;
+import com.qtech.forgemods.updates.jfr.UpdateEvent;
+import com.qtech.forgemods.updates.jfr.UpdateEvents;
+
+import java.util.*;
+
+/**
+ * Resolves the dependency trees of one or more releases into a download plan.
+ * The trees are merged into a graph keyed by mod id, so a mod reached through several paths (or several releases) is planned once.
+ * The plan is topologically ordered: every mod comes after the mods it depends on.
+ * A dependency on a mod that is already in its own ancestry (a cycle) is dropped with a warning, the rest is still planned.
+ *
+ * @author Qboi123
+ */
+public class DependencyResolver {
+    private final Map<String, Dependency> nodes = new LinkedHashMap<>();
+    private final Map<String, Set<String>> edges = new HashMap<>();
+    private boolean cycles = false;
+
+    /**
+     * Add a release, or any other dependency, with its dependency tree.
+     * If a mod id was added before, the first entry is kept.
+     *
+     * @param root the root of the dependency tree.
+     * @return this resolver.
+     */
+    public DependencyResolver add(Dependency root) {
+        visit(root);
+        return this;
+    }
+
+    /**
+     * Add several dependencies, with their dependency trees.
+     *
+     * @param roots the roots of the dependency trees.
+     * @return this resolver.
+     */
+    public DependencyResolver addAll(Collection<? extends Dependency> roots) {
+        for (Dependency root : roots) {
+            visit(root);
+        }
+        return this;
+    }
+
+    private void visit(Dependency dependency) {
+        String modId = dependency.getModId();
+        Dependency known = nodes.get(modId);
+        if (known != null) {
+            // Shared subtrees are only expanded the first time.
+            if (!known.getDownload().equals(dependency.getDownload())) {
+                QFMCore.LOGGER.warn("Conflicting downloads for " + modId + ": using " + known.getDownload() + ", ignoring " + dependency.getDownload());
+            }
+            return;
+        }
+
+        nodes.put(modId, dependency);
+        Set<String> children = new LinkedHashSet<>();
+        edges.put(modId, children);
+        for (Dependency child : dependency.getDependencies()) {
+            children.add(child.getModId());
+            visit(child);
+        }
+    }
+
+    /**
+     * Create the download plan.
+     *
+     * @return the added mods, without duplicates, each one after its own dependencies.
+     */
+    public List<Dependency> resolve() {
+        List<Dependency> plan = new ArrayList<>(nodes.size());
+        Set<String> done = new HashSet<>();
+        Set<String> path = new LinkedHashSet<>();
+
+        for (String modId : nodes.keySet()) {
+            resolve(modId, done, path, plan);
+        }
+        return plan;
+    }
+
+    private void resolve(String modId, Set<String> done, Set<String> path, List<Dependency> plan) {
+        if (done.contains(modId)) {
+            return;
+        }
+        if (path.contains(modId)) {
+            // Drop the dependency closing the cycle, the mod is planned once its other dependencies are.
+            List<String> cycle = new ArrayList<>(path);
+            cycle = cycle.subList(cycle.indexOf(modId), cycle.size());
+            QFMCore.LOGGER.warn("Ignoring dependency cycle: " + String.join(" -> ", cycle) + " -> " + modId);
+            cycles = true;
+            return;
+        }
+
+        path.add(modId);
+        for (String child : edges.get(modId)) {
+            resolve(child, done, path, plan);
+        }
+        path.remove(modId);
+
+        done.add(modId);
+        plan.add(nodes.get(modId));
+    }
+
+    /**
+     * Check if a cycle was dropped by the last {@link #resolve()}.
+     *
+     * @return true if the dependencies contain a cycle, false otherwise.
+     */
+    public boolean hasCycles() {
+        return cycles;
+    }
+
+    /**
+     * Create a download plan for several releases at once.
+     *
+     * @param releases the releases, or other dependency tree roots.
+     * @return the releases and their dependencies, without duplicates, each one after its own dependencies.
+     */
+    public static List<Dependency> plan(Collection<? extends Dependency> releases) {
+        UpdateEvent event = UpdateEvents.beginResolution(releases.size());
+        String status = "FAILED";
+        try {
+            DependencyResolver resolver = new DependencyResolver().addAll(releases);
+            List<Dependency> plan = resolver.resolve();
+            event.setCount(plan.size());
+            status = resolver.hasCycles() ? "CYCLE" : "OK";
+            return plan;
+        } finally {
+            event.setStatus(status);
+            event.commit();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.qtech.forgemods.updates;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.net.URL;
 
 public class Release extends Dependency {
@@ -15,6 +17,16 @@ public class Release extends Dependency {
         this.updater = updater;
     }
 
+    public Release(AbstractUpdater<?> updater, String name, URL download, Dependencies dependencies, @Nullable String sha256) {
+        super(updater.getModInfo().getModId(), name, download, dependencies, sha256);
+        this.updater = updater;
+    }
+
+    public Release(AbstractUpdater<?> updater, String name, URL download, Dependencies dependencies, @Nullable String sha256, long size) {
+        super(updater.getModInfo().getModId(), name, download, dependencies, sha256, size);
+        this.updater = updater;
+    }
+
     public AbstractUpdater<?> getUpdater() {
         return updater;
     }
@@ -5,8 +5,6 @@ import com.qtech.forgemods.core.QFMCore;
 import com.qtech.forgemods.core.QFMVersion;
 import com.qtech.forgemods.core.graphics.MCGraphics;
 import com.qtech.forgemods.core.modules.ui.screens.AdvancedScreen;
-import com.qtech.forgemods.core.modules.updates.AbstractUpdater;
-import com.qtech.forgemods.core.modules.updates.UpdateScreen;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.DialogTexts;
 import net.minecraft.client.gui.IBidiRenderer;
@@ -40,6 +38,7 @@ public class UpdateAvailableScreen extends AdvancedScreen {
 
     // Flags.
     private static boolean initializedBefore = false;
+    private static boolean checking = false;
 
     // Bidi Renderer.
     private final IBidiRenderer field_243276_q = IBidiRenderer.field_243257_a;
@@ -96,7 +95,7 @@ public class UpdateAvailableScreen extends AdvancedScreen {
         // Add buttons.
         this.addButton(new Button(this.width / 2 - 105, this.height / 6 + 96, 100, 20, this.yesButtonText, (p_213006_1_) -> {
             if (this.minecraft != null) {
-                this.minecraft.displayGuiScreen(new UpdateScreen(backScreen, updater.getReleaseUrl(), updater.getDependencies()));
+                this.minecraft.displayGuiScreen(UpdateScreen.create(backScreen, updater.getRelease()));
             }
         }));
         this.addButton(new Button(this.width / 2 + 5, this.height / 6 + 96, 100, 20, this.noButtonText, (p_213004_1_) -> {
@@ -200,7 +199,7 @@ public class UpdateAvailableScreen extends AdvancedScreen {
     }
 
     /**
-     * Check for QForgeMod updates, then show the update available screen.
+     * Check for QForgeMod updates in the background, then show the update available screen.
      *
      * @param mc the minecraft instance.
      * @param gui the current gui.
@@ -212,23 +211,31 @@ public class UpdateAvailableScreen extends AdvancedScreen {
             return;
         }
 
-        // Get QForgeMod updater instance.
-        AbstractUpdater<QFMVersion> updater = AbstractUpdater.getQFMUpdater();
-
-        // Check for QForgeMod updates.
-        AbstractUpdater.UpdateInfo updateInfo = updater.checkForUpdates();
+        // Don't start another check while one is running.
+        if (checking) {
+            return;
+        }
+        checking = true;
 
-        // Is there a update available?
-        if (updateInfo.getStatus() == AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE) {
-            // If yes: is the update available screen initialized before?
-            if (!UpdateAvailableScreen.isInitializedBefore()) {
-                // Show the update available screen.
-                mc.displayGuiScreen(new UpdateAvailableScreen(gui, updater));
+        // Get QForgeMod updater instance.
+        AbstractUpdater<QFMVersion> updater = AbstractUpdater.getInternalUpdater();
+
+        // Check for QForgeMod updates in the background, and handle the result on the main thread.
+        updater.checkForUpdatesAsync().thenAcceptAsync(updateInfo -> {
+            checking = false;
+
+            // Is there a update available?
+            if (updateInfo.getStatus() == AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE) {
+                // If yes: is the update available screen initialized before, and are we still on the same screen?
+                if (!UpdateAvailableScreen.isInitializedBefore() && mc.currentScreen == gui) {
+                    // Show the update available screen.
+                    mc.displayGuiScreen(new UpdateAvailableScreen(gui, updater));
+                }
+            } else if (!UpdateAvailableScreen.isInitializedBefore()) {
+                // Set the initialized before value.
+                initializedBefore = true;
             }
-        } else if (!UpdateAvailableScreen.isInitializedBefore()) {
-            // Set the initialized before value.
-            initializedBefore = true;
-        }
+        }, mc);
 
         // Set updater debug to false.
         AbstractUpdater.DEBUG = false;
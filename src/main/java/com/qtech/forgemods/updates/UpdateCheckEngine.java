@@ -0,0 +1,284 @@
+package com.qtech.forgemods.updates;
+
+import com.qtech.forgemods.core.QFMCore;
+import com.qtech.forgemods.updates.jfr.UpdateEvent;
+import com.qtech.forgemods.updates.jfr.UpdateEvents;
+import com.qtech.forgemods.updates.manifest.BatchManifest;
+import com.qtech.forgemods.updates.manifest.ManifestRelease;
+import com.qtech.forgemods.updates.metrics.UpdateMetrics;
+import com.qtech.forgemods.updates.net.RateLimitedException;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Background update check engine, shared by the client and the server side.
+ * Update checks are run on a dedicated executor, so the game loop never waits on a network round-trip.
+ * The results are queued, and handed back to the main thread when it calls {@link #runMainThreadTasks()}.
+ * Updaters with a {@link AbstractUpdater#getBatchUrl() batch url} are grouped, and checked with one request per batch url.
+ *
+ * @author Qboi123
+ */
+public class UpdateCheckEngine {
+    private static final int POOL_SIZE = 4;
+    private static final UpdateCheckEngine INSTANCE = new UpdateCheckEngine();
+
+    private final ExecutorService executor;
+    private final Queue<Runnable> mainThreadTasks = new ConcurrentLinkedQueue<>();
+    private final Set<AbstractUpdater<?>> checking = ConcurrentHashMap.newKeySet();
+
+    private UpdateCheckEngine() {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.executor = Executors.newFixedThreadPool(POOL_SIZE, runnable -> {
+            Thread thread = new Thread(runnable, "QFMUpdateChecker-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the check engine instance.
+     *
+     * @return the check engine.
+     */
+    public static UpdateCheckEngine get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Check for updates in the background.
+     * The callback is called on the main thread, the next time {@link #runMainThreadTasks()} is called after the check is done.
+     * Does nothing if the updater is already being checked.
+     *
+     * @param updater the updater to check.
+     * @param callback the callback receiving the update information, called on the main thread.
+     */
+    public void check(AbstractUpdater<?> updater, BiConsumer<AbstractUpdater<?>, AbstractUpdater.UpdateInfo> callback) {
+        if (!checking.add(updater)) {
+            return;
+        }
+
+        updater.checkForUpdatesAsync(executor).handle((updateInfo, throwable) -> mainThreadTasks.add(() -> {
+            checking.remove(updater);
+            callback.accept(updater, updateInfo != null ? updateInfo : new AbstractUpdater.UpdateInfo(AbstractUpdater.UpdateStatus.INCOMPATIBLE, throwable));
+        }));
+    }
+
+    /**
+     * Check all registered updaters in the background.
+     *
+     * @param callback the callback receiving the update information, called on the main thread.
+     * @see #check(AbstractUpdater, BiConsumer)
+     */
+    public void checkAll(BiConsumer<AbstractUpdater<?>, AbstractUpdater.UpdateInfo> callback) {
+        checkGrouped(AbstractUpdater.getInstanceList(), callback);
+    }
+
+    /**
+     * Check the registered updaters that are due according to a schedule, in the background.
+     * The schedule is updated with every result, before the callback is called.
+     *
+     * @param schedule the check schedule.
+     * @param callback the callback receiving the update information, called on the main thread.
+     * @return the amount of checks started.
+     */
+    public int checkDue(CheckSchedule schedule, BiConsumer<AbstractUpdater<?>, AbstractUpdater.UpdateInfo> callback) {
+        List<AbstractUpdater<?>> due = new ArrayList<>();
+        for (AbstractUpdater<?> updater : AbstractUpdater.getInstanceList()) {
+            if (!checking.contains(updater) && schedule.isDue(updater)) {
+                due.add(updater);
+            }
+        }
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        checkGrouped(due, (checked, updateInfo) -> {
+            schedule.onChecked(checked, updateInfo);
+            callback.accept(checked, updateInfo);
+        });
+        return due.size();
+    }
+
+    private void checkGrouped(Iterable<AbstractUpdater<?>> updaters, BiConsumer<AbstractUpdater<?>, AbstractUpdater.UpdateInfo> callback) {
+        // Group by batch url, method, Minecraft version and channel, updaters without a batch url are checked on their own.
+        Map<String, List<AbstractUpdater<?>>> batches = new LinkedHashMap<>();
+        for (AbstractUpdater<?> updater : updaters) {
+            URL batchUrl = updater.getBatchUrl();
+            if (batchUrl == null) {
+                check(updater, callback);
+            } else {
+                String key = (updater.isBatchPost() ? "POST " : "GET ") + batchUrl.toExternalForm() + " " + updater.getMinecraftVersion() + "/" + updater.getChannel();
+                batches.computeIfAbsent(key, k -> new ArrayList<>()).add(updater);
+            }
+        }
+
+        for (List<AbstractUpdater<?>> batch : batches.values()) {
+            AbstractUpdater<?> first = batch.get(0);
+            checkBatch(first.getBatchUrl(), first.isBatchPost(), batch, callback);
+        }
+    }
+
+    /**
+     * Check several updaters for updates in the background, with a single batch manifest request.
+     * Updaters that are already being checked are left out.
+     *
+     * @param batchUrl the batch manifest url.
+     * @param post true to POST the mod ids and current versions to the batch url, false to GET it.
+     * @param updaters the updaters to check.
+     * @param callback the callback receiving the update information of every updater, called on the main thread.
+     * @see BatchManifest
+     */
+    public void checkBatch(URL batchUrl, boolean post, List<AbstractUpdater<?>> updaters, BiConsumer<AbstractUpdater<?>, AbstractUpdater.UpdateInfo> callback) {
+        List<AbstractUpdater<?>> claimed = new ArrayList<>(updaters.size());
+        for (AbstractUpdater<?> updater : updaters) {
+            if (checking.add(updater)) {
+                claimed.add(updater);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        // Handled also when resolving failed, else the updaters would stay in the checking set, and never be checked again.
+        CompletableFuture.supplyAsync(() -> resolveBatch(batchUrl, post, claimed), executor).handle((results, throwable) -> mainThreadTasks.add(() -> {
+            if (throwable != null) {
+                QFMCore.LOGGER.error("Failed to check batch " + batchUrl, throwable);
+            }
+            checking.removeAll(claimed);
+            for (AbstractUpdater<?> updater : claimed) {
+                AbstractUpdater.UpdateInfo updateInfo = results != null ? results.get(updater) : null;
+                if (updateInfo == null) {
+                    updateInfo = new AbstractUpdater.UpdateInfo(AbstractUpdater.UpdateStatus.INCOMPATIBLE, throwable);
+                }
+                callback.accept(updater, updateInfo);
+            }
+        }));
+    }
+
+    private static Map<AbstractUpdater<?>, AbstractUpdater.UpdateInfo> resolveBatch(URL batchUrl, boolean post, List<AbstractUpdater<?>> updaters) {
+        long start = System.nanoTime();
+        List<String> modIds = new ArrayList<>(updaters.size());
+        for (AbstractUpdater<?> updater : updaters) {
+            modIds.add(updater.getModInfo().getModId());
+        }
+        UpdateEvent event = UpdateEvents.beginCheck(String.join(",", modIds), batchUrl);
+        Map<AbstractUpdater<?>, AbstractUpdater.UpdateInfo> results = fetchBatch(batchUrl, post, updaters);
+        UpdateEvents.endCheck(event, getBatchStatus(results.values()));
+
+        // Every updater in the batch waited for the same request.
+        long nanos = System.nanoTime() - start;
+        for (Map.Entry<AbstractUpdater<?>, AbstractUpdater.UpdateInfo> entry : results.entrySet()) {
+            UpdateMetrics.get().recordCheck(entry.getKey().getModInfo().getModId(), entry.getValue().getStatus().name(), nanos);
+            entry.getKey().logResult(entry.getValue());
+        }
+        return results;
+    }
+
+    private static String getBatchStatus(Collection<AbstractUpdater.UpdateInfo> results) {
+        AbstractUpdater.UpdateStatus status = null;
+        for (AbstractUpdater.UpdateInfo updateInfo : results) {
+            if (status != null && status != updateInfo.getStatus()) {
+                return "MIXED";
+            }
+            status = updateInfo.getStatus();
+        }
+        return String.valueOf(status);
+    }
+
+    private static Map<AbstractUpdater<?>, AbstractUpdater.UpdateInfo> fetchBatch(URL batchUrl, boolean post, List<AbstractUpdater<?>> updaters) {
+        Map<AbstractUpdater<?>, AbstractUpdater.UpdateInfo> results = new HashMap<>();
+        // Updaters are only batched with others for the same Minecraft version and channel.
+        String mcVersion = updaters.get(0).getMinecraftVersion();
+        String channel = updaters.get(0).getChannel();
+
+        Map<String, ManifestRelease> releases;
+        try {
+            if (post) {
+                Map<String, String> currentVersions = new LinkedHashMap<>();
+                for (AbstractUpdater<?> updater : updaters) {
+                    currentVersions.put(updater.getModInfo().getModId(), updater.getCurrentModVersion().toString());
+                }
+                releases = BatchManifest.post(batchUrl, mcVersion, channel, currentVersions);
+            } else {
+                releases = BatchManifest.get(batchUrl, mcVersion, channel);
+            }
+        } catch (RateLimitedException e) {
+            for (AbstractUpdater<?> updater : updaters) {
+                results.put(updater, new AbstractUpdater.UpdateInfo(AbstractUpdater.UpdateStatus.RATE_LIMITED, e));
+            }
+            return results;
+        } catch (IOException e) {
+            // The whole batch is offline.
+            for (AbstractUpdater<?> updater : updaters) {
+                results.put(updater, new AbstractUpdater.UpdateInfo(AbstractUpdater.UpdateStatus.OFFLINE, e));
+            }
+            return results;
+        } catch (RuntimeException e) {
+            for (AbstractUpdater<?> updater : updaters) {
+                results.put(updater, new AbstractUpdater.UpdateInfo(AbstractUpdater.UpdateStatus.INCOMPATIBLE, e));
+            }
+            return results;
+        }
+
+        for (AbstractUpdater<?> updater : updaters) {
+            AbstractUpdater.UpdateInfo updateInfo;
+            try {
+                updateInfo = updater.applyRelease(releases.get(updater.getModInfo().getModId()));
+            } catch (RuntimeException e) {
+                updateInfo = new AbstractUpdater.UpdateInfo(AbstractUpdater.UpdateStatus.INCOMPATIBLE, e);
+            }
+            results.put(updater, updateInfo);
+        }
+        return results;
+    }
+
+    /**
+     * Run the results of finished checks.
+     * Should be called from the main thread (client or server tick).
+     */
+    public void runMainThreadTasks() {
+        Runnable task;
+        while ((task = mainThreadTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                QFMCore.LOGGER.error("Failed to handle update check result.", e);
+            }
+        }
+    }
+
+    /**
+     * Check if an updater is currently being checked.
+     *
+     * @param updater the updater.
+     * @return true if a check is running, or if its result wasn't handled yet, false otherwise.
+     */
+    public boolean isChecking(AbstractUpdater<?> updater) {
+        return checking.contains(updater);
+    }
+
+    /**
+     * Get the executor the checks run on.
+     *
+     * @return the check executor.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+}
@@ -2,7 +2,6 @@ package com.qtech.forgemods.updates;
 
 import com.qtech.forgemods.core.QFMCore;
 import com.qtech.forgemods.core.client.gui.settings.SettingsScreen;
-import com.qtech.forgemods.core.common.Ticker;
 import com.qtech.forgemods.core.common.interfaces.IVersion;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screen.Screen;
@@ -10,13 +9,13 @@ import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 public class UpdateChecker {
-    private static final int delay = 10;
-    private static final int tickDelay = 20 * delay;
-//    private static int ticks = tickDelay - 1;
     private static final HashMap<AbstractUpdater<?>, IVersion> latestKnownMap = new HashMap<>();
-    private static final Ticker ticker = new Ticker(tickDelay - 1);
+    private static final HashMap<AbstractUpdater<?>, Long> notifyAtMap = new HashMap<>();
+    private static final CheckSchedule schedule = new CheckSchedule();
     private final UpdatesModule module;
 
     UpdateChecker(UpdatesModule module) {
@@ -40,35 +39,54 @@ public class UpdateChecker {
             return;
         }
 
-        ticker.advance();
+        // Handle results of background checks, and check the updaters that are due.
+        UpdateCheckEngine.get().runMainThreadTasks();
+        UpdateCheckEngine.get().checkDue(schedule, this::onChecked);
 
-        if (ticker.getCurrentTicks() >= (tickDelay)) {
-            ticker.reset();
-            AbstractUpdater<?>[] updaters = AbstractUpdater.getInstances();
-            for (AbstractUpdater<?> updater : updaters) {
-                AbstractUpdater.UpdateInfo updateInfo = updater.checkForUpdates();
-                IVersion latest = updater.getLatestVersion();
-                if (!latestKnownMap.containsKey(updater)) {
-                    latestKnownMap.put(updater, updater.getCurrentModVersion());
-                }
-                IVersion latestKnown = latestKnownMap.get(updater);
-                if (latestKnown == null || latest == null) {
-                    continue;  // Todo: show error notification.
-                }
+        // Notify about updates whose rollout moment has come.
+        long now = schedule.now();
+        Iterator<Map.Entry<AbstractUpdater<?>, Long>> iterator = notifyAtMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<AbstractUpdater<?>, Long> entry = iterator.next();
+            if (now >= entry.getValue()) {
+                iterator.remove();
+                notifyUpdate(entry.getKey());
+            }
+        }
+    }
 
-                if (latestKnown.compareTo(latest) < 0) {
-                    latestKnownMap.put(updater, latest);
+    private void onChecked(AbstractUpdater<?> updater, AbstractUpdater.UpdateInfo updateInfo) {
+        IVersion latest = updater.getLatestVersion();
+        if (!latestKnownMap.containsKey(updater)) {
+            latestKnownMap.put(updater, updater.getCurrentModVersion());
+        }
+        IVersion latestKnown = latestKnownMap.get(updater);
+        if (latestKnown == null || latest == null) {
+            return;  // Todo: show error notification.
+        }
+
+        if (latestKnown.compareTo(latest) < 0) {
+            latestKnownMap.put(updater, latest);
 
-                    if (updateInfo.getStatus() == AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE) {
-                        QFMCore.LOGGER.info("Update available for " + updater.getModInfo().getModId());
-                        UpdateToast systemToast = new UpdateToast(updater);
-                        mc.getToastGui().add(systemToast);
-                    }
+            if (updateInfo.getStatus() == AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE) {
+                // Spread the downloads of a new release over the rollout spread the manifest asks for.
+                long delay = schedule.getRolloutDelay(updater);
+                if (delay > 0) {
+                    notifyAtMap.put(updater, schedule.now() + delay);
+                } else {
+                    notifyAtMap.remove(updater);
+                    notifyUpdate(updater);
                 }
             }
         }
     }
 
+    private void notifyUpdate(AbstractUpdater<?> updater) {
+        QFMCore.LOGGER.info("Update available for " + updater.getModInfo().getModId());
+        UpdateToast systemToast = new UpdateToast(updater);
+        Minecraft.getInstance().getToastGui().add(systemToast);
+    }
+
     public UpdatesModule getModule() {
         return module;
     }
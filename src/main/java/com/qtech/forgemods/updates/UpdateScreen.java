@@ -4,10 +4,11 @@ import com.mojang.blaze3d.matrix.MatrixStack;
 import com.mojang.text2speech.Narrator;
 import com.qtech.forgemods.core.QFMCore;
 import com.qtech.forgemods.core.modules.ui.widgets.Progressbar;
-import com.qtech.forgemods.core.modules.updates.Dependencies;
-import com.qtech.forgemods.core.modules.updates.Dependency;
-import com.qtech.forgemods.core.modules.updates.UpdateDownloadedScreen;
-import com.qtech.forgemods.core.modules.updates.UpdateFailedScreen;
+import com.qtech.forgemods.updates.download.DownloadCache;
+import com.qtech.forgemods.updates.download.DownloadScheduler;
+import com.qtech.forgemods.updates.download.FileDownload;
+import com.qtech.forgemods.updates.download.SegmentedDownloader;
+import com.qtech.forgemods.updates.download.TransferEngine;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.DialogTexts;
 import net.minecraft.client.gui.IBidiRenderer;
@@ -19,12 +20,16 @@ import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.fml.common.Mod;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.*;
+import java.io.File;
 import java.net.URL;
-import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 @OnlyIn(Dist.CLIENT)
 @Mod.EventBusSubscriber(modid = QFMCore.modId, bus = Mod.EventBusSubscriber.Bus.FORGE, value = Dist.CLIENT)
@@ -33,22 +38,65 @@ public class UpdateScreen extends Screen {
     private final IBidiRenderer field_243276_q = IBidiRenderer.field_243257_a;
     private final Screen backScreen;
     private final URL downloadUrl;
-    private final Set<Dependency> dependencies;
+    private final List<Dependency> plan;
     private int ticksUntilEnable;
     private long downloaded;
     private long totalSize = -1L;
     private Button done;
     private Progressbar progressbar;
     private Thread downloadThread;
-    private int blockSize = 1024;
+    private int blockSize = TransferEngine.DEFAULT_CHUNK_SIZE;
+    private boolean segmentedDownloads = false;
+    private int segments = 4;
+    private int maxConnections = 4;
 
     private boolean failed = false;
 
     public UpdateScreen(Screen backScreen, URL downloadUrl, Dependencies dependencies) {
+        this(backScreen, downloadUrl, Collections.singletonList(new Dependency(downloadUrl.toExternalForm(), downloadUrl.getPath(), downloadUrl, dependencies)));
+    }
+
+    public UpdateScreen(Screen backScreen, Release release) {
+        this(backScreen, Collections.singletonList(release));
+    }
+
+    /**
+     * Update screen: constructor.
+     * Downloads several releases at once, dependencies shared between them are downloaded once.
+     *
+     * @param backScreen the screen to return to.
+     * @param releases the releases to download, at least one.
+     */
+    public UpdateScreen(Screen backScreen, List<? extends Dependency> releases) {
+        this(backScreen, releases.get(0).getDownload(), releases);
+    }
+
+    private UpdateScreen(Screen backScreen, URL downloadUrl, List<? extends Dependency> releases) {
         super(new TranslationTextComponent("msg.qforgemod.downloading_update.title"));
         this.backScreen = backScreen;
         this.downloadUrl = downloadUrl;
-        this.dependencies = dependencies.getAll();
+        this.plan = DependencyResolver.plan(releases);
+    }
+
+    /**
+     * Create the screen downloading a release, for use in gui callbacks.
+     * If the download can't be planned, the update failed screen is returned instead, so nothing is thrown out of the callback.
+     *
+     * @param backScreen the screen to return to.
+     * @param release the release to download.
+     * @return the update screen, or the update failed screen.
+     */
+    public static Screen create(Screen backScreen, @Nullable Release release) {
+        if (release == null) {
+            QFMCore.LOGGER.warn("No release to download.");
+            return new UpdateFailedScreen(backScreen);
+        }
+        try {
+            return new UpdateScreen(backScreen, release);
+        } catch (RuntimeException e) {
+            QFMCore.LOGGER.error("Failed to plan the download of " + release.getDownload(), e);
+            return new UpdateFailedScreen(backScreen);
+        }
     }
 
     protected void init() {
@@ -78,156 +126,69 @@ public class UpdateScreen extends Screen {
         this.downloadThread.start();
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
     private void downloadThread() {
-        download(downloadUrl);
+        SegmentedDownloader segmentedDownloader = segmentedDownloads ? new SegmentedDownloader(segments, blockSize) : null;
 
-        for (Dependency dependency : this.dependencies) {
-            download(dependency.getDownload());
+        // Download the releases and their dependencies concurrently, once per target file.
+        Map<File, FileDownload> downloads = new LinkedHashMap<>();
+        for (Dependency dependency : this.plan) {
+            addDownload(downloads, dependency.getDownload(), dependency.getSha256(), dependency.getSize(), segmentedDownloader);
         }
-        this.done.active = true;
-    }
-    
-    private void download(URL url) {
-
-        OutputStream updateStream = null;
-        InputStream inputStream = null;
-        try {
-            QFMCore.LOGGER.info("Opening connection to the update file.");
-            URLConnection urlConnection = url.openConnection();
-//            urlConnection.connect();
-
-            String headerField = urlConnection.getHeaderField("Content-Length");
-            this.totalSize = Integer.parseInt(headerField);
-            progressbar.setLength(totalSize);
-            QFMCore.LOGGER.info("Total download size is: " + this.totalSize);
-
-            QFMCore.LOGGER.info("Loading input stream for connection...");
-            // Url Input stream
-            inputStream = urlConnection.getInputStream();
-
-            // Update folder.
-            File updateFolder = new File(Minecraft.getInstance().gameDir.getAbsolutePath(), "updates");
-            if (!updateFolder.exists()) {
-                QFMCore.LOGGER.info("Update folder doesn't exists, creating one...");
-                updateFolder.mkdirs();
-            }
 
-            // Update file.
-            String[] split = url.getPath().split("/");
-            File updateFile = new File(updateFolder.getAbsolutePath(), split[split.length - 1]);
-            if (updateFile.exists()) {
-                QFMCore.LOGGER.info("Update file already exists, deleting...");
-                updateFile.delete();
+        List<FileDownload> failedDownloads = new DownloadScheduler(maxConnections).run(new ArrayList<>(downloads.values()), new FileDownload.ProgressListener() {
+            @Override
+            public void onLength(long length) {
+                totalSize = length;
+                progressbar.setLength(length);
             }
 
-            QFMCore.LOGGER.info("Creating file...");
-            updateFile.createNewFile();
-            updateStream = new FileOutputStream(updateFile);
-
-            // Set initial offset value.
-            int offset = 0;
-
-            // Get current block size.
-            int currentBlockSize = blockSize;
-
-            QFMCore.LOGGER.info("Download started!");
-            QFMCore.LOGGER.info("Block size: " + currentBlockSize);
-
-            // Read data.
-//            QForgeMod.LOGGER.info("Reading data...");
-            byte[] block = new byte[currentBlockSize];
-            int read = read(inputStream, block, currentBlockSize);
-
-            // Write data.
-//            QForgeMod.LOGGER.info("Writing data...");
-            if (read != -1) {
-                updateStream.write(block, 0, read);
-                updateStream.flush();
-
-                // Advance in offset.
-                offset += read;
-                progressbar.setValue(offset);
-            }
-//            QForgeMod.LOGGER.info("New offset: " + offset);
-
-            // Read other bytes.
-            while (read != -1) {
-                // Get current block size.
-                currentBlockSize = blockSize;
-
-                // Read data.
-//                QForgeMod.LOGGER.info("Reading data...");
-                block = new byte[currentBlockSize];
-                read = read(inputStream, block, currentBlockSize);
-                if (read == -1) {
-                    break;
-                }
-
-                // Write data.
-//                QForgeMod.LOGGER.info("Writing data...");
-                updateStream.write(block, 0, read);
-                updateStream.flush();
-
-                // Advance in offset.
-                offset += read;
-                progressbar.setValue(offset);
-//                QForgeMod.LOGGER.info("New offset: " + offset);
+            @Override
+            public void onProgress(long downloaded) {
+                progressbar.setValue(downloaded);
             }
+        });
 
-            // Close remote input stream.
-            inputStream.close();
-
-            // Flush and close local output stream.
-            updateStream.flush();
-            updateStream.close();
-        } catch (IOException e) {
-            // An error occurred.
-            e.printStackTrace();
+        // Partial downloads of failed files are kept, so they can be resumed.
+        // Failed is already set if a download was left out because of a file name conflict.
+        if (!failedDownloads.isEmpty()) {
             failed = true;
+        }
+        this.done.active = true;
+    }
 
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (IOException ioException) {
-                    ioException.printStackTrace();
-                }
-            }
-
-            if (updateStream != null) {
-                try {
-                    updateStream.close();
-                } catch (IOException ioException) {
-                    ioException.printStackTrace();
-                }
+    private void addDownload(Map<File, FileDownload> downloads, URL url, @Nullable String sha256, long size, @Nullable SegmentedDownloader segmentedDownloader) {
+        File updateFile = getUpdateFile(url);
+        FileDownload existing = downloads.get(updateFile);
+        if (existing != null) {
+            if (!existing.getUrl().toExternalForm().equals(url.toExternalForm())) {
+                // The release would never be written, so the update isn't complete.
+                QFMCore.LOGGER.error("Can't download " + url + ", " + existing.getUrl() + " already writes to " + updateFile.getName());
+                failed = true;
             }
+            return;
         }
+        downloads.put(updateFile, new FileDownload(url, updateFile, blockSize, segmentedDownloader, sha256, size, DownloadCache.get()));
     }
 
-    public int read(InputStream stream, byte[] b, int len) throws IOException {
-        int off = 0;
-
-        int c = stream.read();
-        if (c == -1) {
-            return -1;
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private File getUpdateFile(URL url) {
+        // Update folder.
+        File updateFolder = new File(Minecraft.getInstance().gameDir.getAbsolutePath(), "updates");
+        if (!updateFolder.exists()) {
+            QFMCore.LOGGER.info("Update folder doesn't exists, creating one...");
+            updateFolder.mkdirs();
         }
-        b[off] = (byte)c;
 
-        int i = 1;
-        try {
-            for (; i < len ; i++) {
-                c = stream.read();
-                if (c == -1) {
-                    break;
-                }
-                b[off + i] = (byte)c;
-            }
-        } catch (IOException ignored) {
-
-        }
-        return i;
+        // Update file, replaced once the download completes.
+        String[] split = url.getPath().split("/");
+        return new File(updateFolder.getAbsolutePath(), split[split.length - 1]);
     }
 
+    /**
+     * Get the block size, the amount of bytes transferred between progress updates.
+     *
+     * @return the block size.
+     */
     public int getBlockSize() {
         return blockSize;
     }
@@ -236,6 +197,41 @@ public class UpdateScreen extends Screen {
         this.blockSize = blockSize;
     }
 
+    public boolean isSegmentedDownloads() {
+        return segmentedDownloads;
+    }
+
+    /**
+     * Enable or disable segmented downloads.
+     * If enabled, large files are fetched over several connections at once, if the server accepts byte ranges.
+     *
+     * @param segmentedDownloads true to enable segmented downloads.
+     */
+    public void setSegmentedDownloads(boolean segmentedDownloads) {
+        this.segmentedDownloads = segmentedDownloads;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    public void setSegments(int segments) {
+        this.segments = segments;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Set the maximum amount of files downloading at the same time.
+     *
+     * @param maxConnections the maximum amount of concurrent downloads.
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
     public long getDownloaded() {
         return progressbar.getValue();
     }
@@ -248,6 +244,15 @@ public class UpdateScreen extends Screen {
         return downloadUrl;
     }
 
+    /**
+     * Get the download plan, the releases and their dependencies in download order.
+     *
+     * @return the download plan.
+     */
+    public List<Dependency> getPlan() {
+        return Collections.unmodifiableList(plan);
+    }
+
     public void render(@NotNull MatrixStack matrixStack, int mouseX, int mouseY, float partialTicks) {
         this.renderBackground(matrixStack);
         drawCenteredString(matrixStack, this.font, this.title, this.width / 2, 70, 0xffffff);
@@ -4,8 +4,8 @@ import com.qtech.forgemods.core.QFMCore;
 import com.qtech.forgemods.core.client.gui.modules.ModuleCompatibility;
 import com.qtech.forgemods.core.common.Module;
 import com.qtech.forgemods.core.common.ModuleSecurity;
-import com.qtech.forgemods.core.common.Ticker;
 import com.qtech.forgemods.core.common.interfaces.IVersion;
+import com.qtech.forgemods.updates.metrics.UpdateMetrics;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screen.MainMenuScreen;
 import net.minecraft.client.gui.screen.Screen;
@@ -20,6 +20,7 @@ import net.minecraftforge.fml.loading.moddiscovery.ModInfo;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The updates module.
@@ -86,6 +87,7 @@ public class UpdatesModule extends Module {
 
     @Override
     public void onEnable() {
+        UpdateMetrics.get().start(UpdateMetrics.DEFAULT_SUMMARY_INTERVAL, TimeUnit.MILLISECONDS);
         if (QFMCore.isClientSide()) {
             MinecraftForge.EVENT_BUS.register(this.clientSide);
             MinecraftForge.EVENT_BUS.register(this.updateChecker);
@@ -96,6 +98,7 @@ public class UpdatesModule extends Module {
 
     @Override
     public void onDisable() {
+        UpdateMetrics.get().stop();
         if (QFMCore.isClientSide()) {
             MinecraftForge.EVENT_BUS.unregister(this.clientSide);
             MinecraftForge.EVENT_BUS.unregister(this.updateChecker);
@@ -149,7 +152,7 @@ public class UpdatesModule extends Module {
             Screen gui = event.getGui();
 
             // Return if already initialized.
-            if (com.qtech.forgemods.core.modules.updates.UpdateAvailableScreen.isInitializedBefore()) {
+            if (UpdateAvailableScreen.isInitializedBefore()) {
                 return;
             }
 
@@ -162,10 +165,8 @@ public class UpdatesModule extends Module {
     }
 
     private static class ServerSide extends Module.ServerSide {
-        private static final int delay = 10;
-        private static final int tickDelay = 20 * delay;
         private static final HashMap<AbstractUpdater<?>, IVersion> latestKnownMap = new HashMap<>();
-        private static final Ticker ticker = new Ticker(tickDelay - 1);
+        private static final CheckSchedule schedule = new CheckSchedule();
 
         public ServerSide() {
 
@@ -181,32 +182,29 @@ public class UpdatesModule extends Module {
                 return;
             }
 
-            ticker.advance();
-
-            if (ticker.getCurrentTicks() >= (tickDelay)) {
-                ticker.reset();
-
-                QFMCore.LOGGER.info("Checking for mod updates...");
+            // Handle results of background checks, and check the updaters that are due.
+            UpdateCheckEngine.get().runMainThreadTasks();
+            int started = UpdateCheckEngine.get().checkDue(schedule, this::onChecked);
+            if (started > 0) {
+                QFMCore.LOGGER.info("Checking " + started + " mod(s) for updates...");
+            }
+        }
 
-                AbstractUpdater<?>[] updaters = AbstractUpdater.getInstances();
-                for (AbstractUpdater<?> updater : updaters) {
-                    AbstractUpdater.UpdateInfo updateInfo = updater.checkForUpdates();
-                    IVersion latest = updater.getLatestVersion();
-                    if (!latestKnownMap.containsKey(updater)) {
-                        latestKnownMap.put(updater, updater.getCurrentModVersion());
-                    }
-                    IVersion latestKnown = latestKnownMap.get(updater);
-                    if (latestKnown == null || latest == null) {
-                        continue;  // Todo: show error notification.
-                    }
+        private void onChecked(AbstractUpdater<?> updater, AbstractUpdater.UpdateInfo updateInfo) {
+            IVersion latest = updater.getLatestVersion();
+            if (!latestKnownMap.containsKey(updater)) {
+                latestKnownMap.put(updater, updater.getCurrentModVersion());
+            }
+            IVersion latestKnown = latestKnownMap.get(updater);
+            if (latestKnown == null || latest == null) {
+                return;  // Todo: show error notification.
+            }
 
-                    if (latestKnown.compareTo(latest) < 0) {
-                        latestKnownMap.put(updater, latest);
+            if (latestKnown.compareTo(latest) < 0) {
+                latestKnownMap.put(updater, latest);
 
-                        if (updateInfo.getStatus() == AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE) {
-                            QFMCore.LOGGER.info("Update available for " + updater.getModInfo().getModId());
-                        }
-                    }
+                if (updateInfo.getStatus() == AbstractUpdater.UpdateStatus.UPDATE_AVAILABLE) {
+                    QFMCore.LOGGER.info("Update available for " + updater.getModInfo().getModId());
                 }
             }
         }
@@ -0,0 +1,49 @@
+package com.qtech.forgemods.updates.download;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * Readable channel that updates a message digest with every byte read through it.
+ * Used to hash a download while it's being transferred, so verifying it doesn't need another pass over the file.
+ *
+ * @author Qboi123
+ */
+public class DigestingChannel implements ReadableByteChannel {
+    private final ReadableByteChannel source;
+    private final MessageDigest digest;
+
+    public DigestingChannel(ReadableByteChannel source, MessageDigest digest) {
+        this.source = source;
+        this.digest = digest;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int start = dst.position();
+        int read = source.read(dst);
+        if (read > 0) {
+            ByteBuffer view = dst.duplicate();
+            view.limit(dst.position());
+            view.position(start);
+            digest.update(view);
+        }
+        return read;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return source.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    public MessageDigest getDigest() {
+        return digest;
+    }
+}
@@ -0,0 +1,337 @@
+package com.qtech.forgemods.updates.download;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.qtech.forgemods.core.QFMCore;
+import net.minecraftforge.fml.loading.FMLPaths;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of downloaded files.
+ * Files are stored by their SHA-256 hash, and indexed by their url and ETag,
+ * so a file is never transferred twice when its hash (from the manifest) or its url and ETag are known.
+ * Stored files are hard links to the downloaded files where possible, so they only take extra disk space once the download is replaced.
+ * Files unused for longer than the maximum age are evicted, and the least recently used ones once the cache exceeds its maximum size.
+ *
+ * @author Qboi123
+ */
+public class DownloadCache {
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+    public static final long DEFAULT_MAX_AGE = TimeUnit.DAYS.toMillis(30);
+
+    private static final Gson GSON = new Gson();
+    private static final Pattern SHA256 = Pattern.compile("^[0-9a-f]{64}$");
+    private static final DownloadCache INSTANCE = new DownloadCache(FMLPaths.GAMEDIR.get().resolve("updates").resolve(".cache"));
+
+    private final Path blobs;
+    private final Path indexFile;
+    private final long maxSize;
+    private final long maxAge;
+    private Map<String, IndexEntry> index;
+
+    /**
+     * Download cache: constructor.
+     *
+     * @param directory the directory to store the cache in.
+     */
+    public DownloadCache(Path directory) {
+        this(directory, DEFAULT_MAX_SIZE, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Download cache: constructor.
+     *
+     * @param directory the directory to store the cache in.
+     * @param maxSize the maximum total size of the stored files, in bytes.
+     * @param maxAge the time a stored file is kept after it was last used, in milliseconds.
+     */
+    public DownloadCache(Path directory, long maxSize, long maxAge) {
+        this.blobs = directory.resolve("blobs").toAbsolutePath().normalize();
+        this.indexFile = directory.resolve("downloads.json");
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Get the download cache used by the update screen.
+     *
+     * @return the download cache.
+     */
+    public static DownloadCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Look up a file by its SHA-256 hash.
+     *
+     * @param sha256 the lowercase hex SHA-256 hash.
+     * @return the stored file, or null if it isn't stored or the hash isn't valid.
+     */
+    @Nullable
+    public Path lookup(String sha256) {
+        Path blob = getBlob(sha256);
+        if (blob == null || !Files.isRegularFile(blob)) {
+            return null;
+        }
+        try {
+            // Marks it as recently used.
+            Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            QFMCore.LOGGER.debug("Couldn't touch " + blob.getFileName() + " in the download cache: " + e.getMessage());
+        }
+        return blob;
+    }
+
+    @Nullable
+    private Path getBlob(@Nullable String sha256) {
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            return null;
+        }
+        Path blob = blobs.resolve(sha256).normalize();
+        return blob.startsWith(blobs) ? blob : null;
+    }
+
+    /**
+     * Look up a file by the url and ETag it was downloaded with.
+     *
+     * @param url the download url.
+     * @param eTag the current ETag of the download.
+     * @return the stored file, or null if it isn't stored.
+     */
+    @Nullable
+    public synchronized Path lookup(URL url, String eTag) {
+        IndexEntry entry = getIndex().get(url.toExternalForm());
+        if (entry == null || !eTag.equals(entry.etag)) {
+            return null;
+        }
+        return lookup(entry.sha256);
+    }
+
+    /**
+     * Check if a file was downloaded from an url before, so it's worth asking the server for its ETag.
+     *
+     * @param url the download url.
+     * @return true if the url is in the index.
+     */
+    public synchronized boolean isKnown(URL url) {
+        return getIndex().containsKey(url.toExternalForm());
+    }
+
+    /**
+     * Store a downloaded file.
+     *
+     * @param file the downloaded file.
+     * @param sha256 the lowercase hex SHA-256 hash of the file.
+     * @param url the url the file was downloaded from.
+     * @param eTag the ETag the file was downloaded with, or null.
+     */
+    public synchronized void store(Path file, String sha256, URL url, @Nullable String eTag) {
+        Path blob = getBlob(sha256);
+        if (blob == null) {
+            QFMCore.LOGGER.warn("Not storing " + file.getFileName() + " in the download cache, invalid SHA-256 hash: " + sha256);
+            return;
+        }
+
+        try {
+            Files.createDirectories(blobs);
+            if (!Files.exists(blob)) {
+                link(file, blob);
+            }
+
+            if (eTag != null) {
+                IndexEntry entry = new IndexEntry();
+                entry.etag = eTag;
+                entry.sha256 = sha256;
+                getIndex().put(url.toExternalForm(), entry);
+                saveIndex();
+            }
+        } catch (IOException e) {
+            QFMCore.LOGGER.warn("Couldn't store " + file.getFileName() + " in the download cache: " + e.getMessage());
+        }
+
+        evict();
+    }
+
+    private void link(Path file, Path blob) throws IOException {
+        try {
+            Files.createLink(blob, file);
+        } catch (IOException | UnsupportedOperationException e) {
+            Path temp = Files.createTempFile(blobs, blob.getFileName().toString(), ".tmp");
+            Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Evict the files unused for longer than the maximum age, then the least recently used files until the cache fits its maximum size.
+     */
+    private void evict() {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(blobs)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toCollection(ArrayList::new));
+        } catch (IOException e) {
+            QFMCore.LOGGER.warn("Couldn't list the download cache: " + e.getMessage());
+            return;
+        }
+
+        Map<Path, Long> lastUsed = new HashMap<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        long totalSize = 0;
+        for (Path file : files) {
+            try {
+                lastUsed.put(file, Files.getLastModifiedTime(file).toMillis());
+                sizes.put(file, Files.size(file));
+                totalSize += sizes.get(file);
+            } catch (IOException e) {
+                lastUsed.put(file, 0L);
+                sizes.put(file, 0L);
+            }
+        }
+        files.sort(Comparator.comparing(lastUsed::get));
+
+        long expired = System.currentTimeMillis() - maxAge;
+        List<String> evicted = new ArrayList<>();
+        for (Path file : files) {
+            if (lastUsed.get(file) >= expired && totalSize <= maxSize) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(file);
+                totalSize -= sizes.get(file);
+                evicted.add(file.getFileName().toString());
+            } catch (IOException e) {
+                QFMCore.LOGGER.warn("Couldn't evict " + file.getFileName() + " from the download cache: " + e.getMessage());
+            }
+        }
+
+        if (!evicted.isEmpty() && getIndex().values().removeIf(entry -> evicted.contains(entry.sha256))) {
+            try {
+                saveIndex();
+            } catch (IOException e) {
+                QFMCore.LOGGER.warn("Couldn't save the download cache index: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Remove a stored file, and the index entries pointing to it.
+     *
+     * @param blob the stored file, as returned by a lookup.
+     */
+    public synchronized void remove(Path blob) {
+        String sha256 = blob.getFileName().toString();
+        try {
+            Files.deleteIfExists(blob);
+            if (getIndex().values().removeIf(entry -> sha256.equals(entry.sha256))) {
+                saveIndex();
+            }
+        } catch (IOException e) {
+            QFMCore.LOGGER.warn("Couldn't remove " + sha256 + " from the download cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Put a stored file at the target location, replacing an existing file.
+     * Uses a hard link if possible, a copy otherwise.
+     *
+     * @param blob the stored file, as returned by a lookup.
+     * @param target the target location.
+     * @throws IOException if the file couldn't be linked nor copied.
+     */
+    public void materialize(Path blob, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, blob);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(blob, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Map<String, IndexEntry> getIndex() {
+        if (index == null) {
+            index = new HashMap<>();
+            if (Files.exists(indexFile)) {
+                try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+                    Map<String, IndexEntry> loaded = GSON.fromJson(reader, new TypeToken<Map<String, IndexEntry>>() {}.getType());
+                    if (loaded != null) {
+                        index.putAll(loaded);
+                    }
+                } catch (IOException | JsonParseException e) {
+                    QFMCore.LOGGER.warn("Couldn't read the download cache index: " + e.getMessage());
+                }
+            }
+        }
+        return index;
+    }
+
+    private void saveIndex() throws IOException {
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            GSON.toJson(index, writer);
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Calculate the SHA-256 hash of a file.
+     *
+     * @param file the file.
+     * @return the lowercase hex SHA-256 hash.
+     * @throws IOException if the file couldn't be read.
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    private static class IndexEntry {
+        private String etag;
+        private String sha256;
+    }
+}
@@ -0,0 +1,120 @@
+package com.qtech.forgemods.updates.download;
+
+import com.qtech.forgemods.core.QFMCore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a set of downloads concurrently, with a limit on the amount of files downloading at the same time.
+ * The progress of every file is rolled up into one total, reported to a single {@link FileDownload.ProgressListener}.
+ *
+ * @author Qboi123
+ */
+public class DownloadScheduler {
+    private final int maxConcurrent;
+
+    /**
+     * Download scheduler: constructor.
+     *
+     * @param maxConcurrent the maximum amount of files to download at the same time.
+     *                      Segmented downloads can use more than one connection per file.
+     */
+    public DownloadScheduler(int maxConcurrent) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("Concurrent download limit must be at least 1.");
+        }
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * Run the downloads, and wait for all of them to finish.
+     *
+     * @param downloads the downloads to run.
+     * @param total the listener receiving the summed length and progress of all downloads.
+     * @return the downloads that failed, empty if all succeeded.
+     */
+    public List<FileDownload> run(List<FileDownload> downloads, FileDownload.ProgressListener total) {
+        if (downloads.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrent, downloads.size()), runnable -> {
+            Thread thread = new Thread(runnable, "QFMUpdateDownloader-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Progress progress = new Progress(downloads.size(), total);
+        List<FileDownload> failed = Collections.synchronizedList(new ArrayList<>());
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < downloads.size(); i++) {
+                FileDownload download = downloads.get(i);
+                int index = i;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        download.run(new FileDownload.ProgressListener() {
+                            @Override
+                            public void onLength(long length) {
+                                progress.setLength(index, length);
+                            }
+
+                            @Override
+                            public void onProgress(long downloaded) {
+                                progress.setDownloaded(index, downloaded);
+                            }
+                        });
+                    } catch (IOException | RuntimeException e) {
+                        QFMCore.LOGGER.error("Failed to download " + download.getUrl(), e);
+                        failed.add(download);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+        return failed;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Per file progress, summed into a total.
+     */
+    private static class Progress {
+        private final long[] lengths;
+        private final long[] downloaded;
+        private final FileDownload.ProgressListener total;
+        private long totalLength;
+        private long totalDownloaded;
+
+        Progress(int files, FileDownload.ProgressListener total) {
+            this.lengths = new long[files];
+            this.downloaded = new long[files];
+            this.total = total;
+        }
+
+        synchronized void setLength(int index, long length) {
+            totalLength += length - lengths[index];
+            lengths[index] = length;
+            total.onLength(totalLength);
+        }
+
+        synchronized void setDownloaded(int index, long value) {
+            totalDownloaded += value - downloaded[index];
+            downloaded[index] = value;
+            total.onProgress(totalDownloaded);
+        }
+    }
+}
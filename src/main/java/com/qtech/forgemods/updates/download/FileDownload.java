@@ -0,0 +1,497 @@
+package com.qtech.forgemods.updates.download;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.qtech.forgemods.core.QFMCore;
+import com.qtech.forgemods.updates.jfr.UpdateEvent;
+import com.qtech.forgemods.updates.jfr.UpdateEvents;
+import com.qtech.forgemods.updates.metrics.UpdateMetrics;
+import com.qtech.forgemods.updates.net.HttpClients;
+import com.qtech.forgemods.updates.net.HttpRequest;
+import com.qtech.forgemods.updates.net.HttpResponse;
+import com.qtech.forgemods.updates.net.RateLimitedException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A resumable file download.
+ * Bytes are written to a {@code .part} file next to the target, with a small {@code .part.json} sidecar recording the url,
+ * the validator (ETag or Last-Modified) and the amount of bytes written.
+ * A retry, also after a game restart, continues with a {@code Range} request, and the part file replaces the target once it's complete.
+ * With a {@link DownloadCache}, files that were downloaded before are taken from the cache instead.
+ * Single stream downloads are hashed while they're written, and checked against the size and hash from the manifest.
+ *
+ * @author Qboi123
+ */
+public class FileDownload {
+    private static final Gson GSON = new Gson();
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long MAX_RATE_LIMIT_WAIT = TimeUnit.MINUTES.toMillis(1);
+    private static final long STATE_SAVE_INTERVAL = 1024 * 1024;
+
+    private final URL url;
+    private final File target;
+    private final File partFile;
+    private final File stateFile;
+    private final int blockSize;
+    private final SegmentedDownloader segmentedDownloader;
+    private final String sha256;
+    private final long size;
+    private final DownloadCache cache;
+
+    /**
+     * File download: constructor.
+     *
+     * @param url the download url.
+     * @param target the file to download to.
+     * @param blockSize the amount of bytes to transfer between progress updates.
+     * @param segmentedDownloader the downloader for segmented downloads, or null to always use a single stream.
+     */
+    public FileDownload(URL url, File target, int blockSize, @Nullable SegmentedDownloader segmentedDownloader) {
+        this(url, target, blockSize, segmentedDownloader, null, -1, null);
+    }
+
+    /**
+     * File download: constructor.
+     *
+     * @param url the download url.
+     * @param target the file to download to.
+     * @param blockSize the amount of bytes to transfer between progress updates.
+     * @param segmentedDownloader the downloader for segmented downloads, or null to always use a single stream.
+     * @param sha256 the expected SHA-256 hash of the file, from the manifest, or null if unknown.
+     * @param size the expected size of the file, from the manifest, or -1 if unknown.
+     * @param cache the download cache to take the file from, and to store it in after downloading, or null to not cache it.
+     */
+    public FileDownload(URL url, File target, int blockSize, @Nullable SegmentedDownloader segmentedDownloader, @Nullable String sha256, long size, @Nullable DownloadCache cache) {
+        this.url = url;
+        this.target = target;
+        this.partFile = new File(target.getParentFile(), target.getName() + ".part");
+        this.stateFile = new File(target.getParentFile(), target.getName() + ".part.json");
+        this.blockSize = blockSize;
+        this.segmentedDownloader = segmentedDownloader;
+        this.sha256 = sha256;
+        this.size = size;
+        this.cache = cache;
+    }
+
+    /**
+     * Run the download, resuming a previous attempt if possible.
+     * Failed attempts are retried (resuming where they stopped), up to three attempts in total.
+     * A file not matching the manifest's size or hash is removed, and retried right away from the start.
+     *
+     * @param listener the progress listener.
+     * @throws IOException if the last attempt failed.
+     */
+    public void run(ProgressListener listener) throws IOException {
+        UpdateEvent event = UpdateEvents.beginDownload(url, target.getName());
+        String status = "FAILED";
+        try {
+            status = download(listener);
+        } finally {
+            event.setBytes(target.length());
+            event.setStatus(status);
+            event.commit();
+        }
+    }
+
+    private String download(ProgressListener listener) throws IOException {
+        UpdateMetrics metrics = UpdateMetrics.get();
+        if (takeFromCache(listener)) {
+            metrics.counter("download.cache_hits").increment();
+            return "CACHED";
+        }
+
+        long start = System.nanoTime();
+        IOException failure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (attempt > 1) {
+                metrics.counter("download.retries").increment();
+            }
+            try {
+                attempt(listener);
+                metrics.recordDownload(target.length(), System.nanoTime() - start);
+                return "OK";
+            } catch (RateLimitedException e) {
+                if (attempt == MAX_ATTEMPTS || e.getRetryAfter() > MAX_RATE_LIMIT_WAIT) {
+                    metrics.counter("download.failures").increment();
+                    throw e;
+                }
+                QFMCore.LOGGER.info("Download of " + url + " is rate limited, retrying in " + TimeUnit.MILLISECONDS.toSeconds(e.getRetryAfter()) + " seconds.");
+                sleep(e.getRetryAfter());
+                failure = e;
+            } catch (IntegrityException e) {
+                QFMCore.LOGGER.warn("Download attempt " + attempt + " of " + url + " is corrupt, retrying: " + e.getMessage());
+                metrics.counter("download.corrupt").increment();
+                failure = e;
+            } catch (IOException e) {
+                QFMCore.LOGGER.warn("Download attempt " + attempt + " of " + url + " failed: " + e.getMessage());
+                failure = e;
+            }
+        }
+        metrics.counter("download.failures").increment();
+        throw failure;
+    }
+
+    /**
+     * Take the file from the download cache, by its hash if the manifest provides one, or by its url and current ETag.
+     *
+     * @param listener the progress listener.
+     * @return true if the file was taken from the cache.
+     */
+    private boolean takeFromCache(ProgressListener listener) {
+        if (cache == null) {
+            return false;
+        }
+
+        Path blob = null;
+        if (sha256 != null) {
+            blob = cache.lookup(sha256);
+        } else if (cache.isKnown(url)) {
+            try {
+                SegmentedDownloader.Probe probe = SegmentedDownloader.probe(url);
+                if (probe != null && probe.getETag() != null) {
+                    blob = cache.lookup(url, probe.getETag());
+                }
+            } catch (IOException e) {
+                QFMCore.LOGGER.warn("Couldn't get the ETag of " + url + ": " + e.getMessage());
+            }
+        }
+
+        if (blob == null) {
+            return false;
+        }
+
+        try {
+            if (size >= 0 && Files.size(blob) != size) {
+                QFMCore.LOGGER.warn("Not taking " + target.getName() + " from the download cache, expected " + size + " bytes, the cached file has " + Files.size(blob));
+                return false;
+            }
+
+            // Stored files are named by their hash. They share the file of an earlier download, which may have changed since.
+            String hash = DownloadCache.sha256(blob);
+            if (!hash.equals(blob.getFileName().toString())) {
+                QFMCore.LOGGER.warn("Not taking " + target.getName() + " from the download cache, the cached file is damaged.");
+                cache.remove(blob);
+                return false;
+            }
+            cache.materialize(blob, target.toPath());
+            long size = Files.size(target.toPath());
+            listener.onLength(size);
+            listener.onProgress(size);
+            QFMCore.LOGGER.info("Took " + target.getName() + " from the download cache.");
+            return true;
+        } catch (IOException e) {
+            QFMCore.LOGGER.warn("Couldn't take " + target.getName() + " from the download cache: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void attempt(ProgressListener listener) throws IOException {
+        State state = loadState();
+
+        if (segmentedDownloader != null) {
+            SegmentedDownloader.Probe probe = null;
+            try {
+                probe = SegmentedDownloader.probe(url);
+            } catch (IOException e) {
+                QFMCore.LOGGER.warn("Couldn't probe " + url + " for range support, using a single stream: " + e.getMessage());
+            }
+
+            if (segmentedDownloader.shouldSegment(probe)) {
+                downloadSegmented(probe, state, listener);
+                return;
+            }
+        }
+
+        downloadStream(state, listener);
+    }
+
+    private void downloadSegmented(SegmentedDownloader.Probe probe, @Nullable State state, ProgressListener listener) throws IOException {
+        long offset = 0;
+        if (state != null && state.length == probe.getSize() && state.matches(probe.getETag(), probe.getLastModified())) {
+            offset = state.written;
+            QFMCore.LOGGER.info("Resuming segmented download of " + url + " at " + offset + " bytes.");
+        }
+
+        State newState = new State(url.toExternalForm(), probe.getETag(), probe.getLastModified(), probe.getSize(), offset);
+        saveState(newState);
+
+        listener.onLength(probe.getSize());
+        listener.onProgress(offset);
+        QFMCore.LOGGER.info("Total download size is: " + probe.getSize() + ", downloading in segments.");
+
+        try {
+            segmentedDownloader.download(url, probe.getSize(), offset, partFile, listener::onProgress);
+        } catch (SegmentedDownloadException e) {
+            newState.written = e.getContiguousBytes();
+            saveState(newState);
+            throw e;
+        }
+
+        // Segments arrive out of order, so these are hashed after downloading.
+        complete(newState, null);
+    }
+
+    private void downloadStream(@Nullable State state, ProgressListener listener) throws IOException {
+        QFMCore.LOGGER.info("Opening connection to the update file.");
+        HttpRequest request = HttpRequest.get(url).setAcceptGzip(false);
+
+        long offset = 0;
+        if (state != null && HttpClients.isHttp(url) && state.getValidator() != null) {
+            offset = state.written;
+            request.setHeader("Range", "bytes=" + offset + "-");
+            request.setHeader("If-Range", state.getValidator());
+        }
+
+        try (HttpResponse response = HttpClients.get().execute(request)) {
+            int responseCode = response.getStatus();
+            String eTag = response.getHeader("ETag");
+            String lastModified = response.getHeader("Last-Modified");
+            long contentLength = response.getContentLength();
+            long length;
+
+            if (offset > 0 && responseCode == HttpURLConnection.HTTP_PARTIAL && isRangeFrom(response.getHeader("Content-Range"), offset)) {
+                QFMCore.LOGGER.info("Resuming download of " + url + " at " + offset + " bytes.");
+                length = contentLength < 0 ? -1 : offset + contentLength;
+            } else if (offset > 0 && responseCode == 416 && state.length == offset) {
+                // Everything was downloaded already.
+                listener.onLength(offset);
+                listener.onProgress(offset);
+                complete(state, null);
+                return;
+            } else if (responseCode == 416) {
+                deletePart();
+                throw new IOException("Range not satisfiable for " + url + ", removed partial download.");
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                if (offset > 0) {
+                    // Changed on the server, or the range was ignored: start over.
+                    QFMCore.LOGGER.info("Can't resume download of " + url + ", starting over.");
+                    offset = 0;
+                }
+                length = contentLength;
+            } else {
+                throw new IOException("Unexpected response code " + responseCode + " for " + url);
+            }
+
+            // Content length is -1 for chunked responses.
+            if (length >= 0) {
+                listener.onLength(length);
+            }
+            listener.onProgress(offset);
+            QFMCore.LOGGER.info("Total download size is: " + length);
+
+            State newState = new State(url.toExternalForm(), eTag, lastModified, length, offset);
+            saveState(newState);
+
+            // Hash while transferring, starting with the bytes of the previous attempt if resuming.
+            MessageDigest digest = sha256 != null || cache != null ? DownloadCache.newSha256() : null;
+            if (digest != null && offset > 0) {
+                updateDigest(digest, offset);
+            }
+
+            QFMCore.LOGGER.info("Download started!");
+            try (FileChannel channel = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.truncate(offset);
+
+                ReadableByteChannel source = Channels.newChannel(response.getBody());
+                if (digest != null) {
+                    source = new DigestingChannel(source, digest);
+                }
+
+                long start = offset;
+                long[] lastSaved = {offset};
+                try {
+                    TransferEngine.transfer(source, channel, start, length < 0 ? -1 : length - start, blockSize, read -> {
+                        newState.written += read;
+                        listener.onProgress(newState.written);
+                        if (newState.written - lastSaved[0] >= STATE_SAVE_INTERVAL) {
+                            lastSaved[0] = newState.written;
+                            saveState(newState);
+                        }
+                    });
+                } finally {
+                    saveState(newState);
+                }
+            }
+
+            if (length >= 0 && newState.written != length) {
+                throw new IOException("Download of " + url + " ended early at " + newState.written + " of " + length + " bytes.");
+            }
+
+            complete(newState, digest != null ? DownloadCache.toHex(digest.digest()) : null);
+        }
+    }
+
+    private static boolean isRangeFrom(@Nullable String contentRange, long offset) {
+        return contentRange != null && contentRange.trim().startsWith("bytes " + offset + "-");
+    }
+
+    /**
+     * Verify the part file, and move it to the target.
+     *
+     * @param state the download state.
+     * @param hash the SHA-256 hash calculated while downloading, or null to calculate it here if needed.
+     * @throws IntegrityException if the file doesn't match the manifest's size or hash, the part file is removed then.
+     * @throws IOException if the file couldn't be read or moved.
+     */
+    private void complete(State state, @Nullable String hash) throws IOException {
+        long actualSize = Files.size(partFile.toPath());
+        if (size >= 0 && actualSize != size) {
+            deletePart();
+            throw new IntegrityException("Expected " + size + " bytes for " + url + ", got " + actualSize);
+        }
+
+        if (hash == null && (sha256 != null || cache != null)) {
+            hash = DownloadCache.sha256(partFile.toPath());
+        }
+        if (sha256 != null && !sha256.equals(hash)) {
+            deletePart();
+            throw new IntegrityException("SHA-256 mismatch for " + url + ", expected " + sha256 + ", got " + hash);
+        }
+
+        Files.move(partFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(stateFile.toPath());
+
+        if (cache != null) {
+            cache.store(target.toPath(), hash, url, state.etag);
+        }
+    }
+
+    private void updateDigest(MessageDigest digest, long length) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(partFile.toPath())) {
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = length;
+            int read;
+            while (remaining > 0 && (read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                digest.update(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate limit.");
+        }
+    }
+
+    private void deletePart() throws IOException {
+        Files.deleteIfExists(partFile.toPath());
+        Files.deleteIfExists(stateFile.toPath());
+    }
+
+    /**
+     * Load the sidecar state of a previous attempt, if it's for the same url and matches the part file.
+     *
+     * @return the state, or null if there's nothing to resume.
+     */
+    @Nullable
+    private State loadState() {
+        if (!stateFile.exists() || !partFile.exists()) {
+            return null;
+        }
+
+        try (Reader reader = Files.newBufferedReader(stateFile.toPath(), StandardCharsets.UTF_8)) {
+            State state = GSON.fromJson(reader, State.class);
+            if (state != null && url.toExternalForm().equals(state.url) && state.written > 0 && state.written <= partFile.length()) {
+                return state;
+            }
+        } catch (IOException | JsonParseException e) {
+            QFMCore.LOGGER.warn("Couldn't read download state of " + partFile + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    private void saveState(State state) {
+        try {
+            Path temp = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp").toPath();
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                GSON.toJson(state, writer);
+            }
+            Files.move(temp, stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            QFMCore.LOGGER.warn("Couldn't write download state of " + partFile + ": " + e.getMessage());
+        }
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public File getTarget() {
+        return target;
+    }
+
+    /**
+     * Download progress listener.
+     *
+     * @author Qboi123
+     */
+    public interface ProgressListener {
+        /**
+         * Called when the total size of the file is known.
+         *
+         * @param length the total size, in bytes.
+         */
+        void onLength(long length);
+
+        /**
+         * Called when bytes were written, possibly from several threads for segmented downloads.
+         *
+         * @param downloaded the total amount of bytes written, including resumed bytes.
+         */
+        void onProgress(long downloaded);
+    }
+
+    /**
+     * Sidecar state of a partial download.
+     */
+    private static class State {
+        private String url;
+        private String etag;
+        private String lastModified;
+        private long length;
+        private long written;
+
+        State(String url, @Nullable String etag, @Nullable String lastModified, long length, long written) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.written = written;
+        }
+
+        @Nullable
+        String getValidator() {
+            return etag != null ? etag : lastModified;
+        }
+
+        boolean matches(@Nullable String etag, @Nullable String lastModified) {
+            if (this.etag != null) {
+                return this.etag.equals(etag);
+            }
+            return this.lastModified != null && this.lastModified.equals(lastModified);
+        }
+    }
+}
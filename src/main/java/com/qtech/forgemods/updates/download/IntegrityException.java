@@ -0,0 +1,14 @@
+package com.qtech.forgemods.updates.download;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a downloaded file doesn't match the size or SHA-256 hash given by the manifest.
+ *
+ * @author Qboi123
+ */
+public class IntegrityException extends IOException {
+    public IntegrityException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,27 @@
+package com.qtech.forgemods.updates.download;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a segmented download failed.
+ * Holds the amount of bytes at the start of the file that were completely downloaded, so the download can be resumed from there.
+ *
+ * @author Qboi123
+ */
+public class SegmentedDownloadException extends IOException {
+    private final long contiguousBytes;
+
+    public SegmentedDownloadException(String message, Throwable cause, long contiguousBytes) {
+        super(message, cause);
+        this.contiguousBytes = contiguousBytes;
+    }
+
+    /**
+     * Get the amount of bytes at the start of the file that were completely downloaded.
+     *
+     * @return the amount of contiguous bytes.
+     */
+    public long getContiguousBytes() {
+        return contiguousBytes;
+    }
+}
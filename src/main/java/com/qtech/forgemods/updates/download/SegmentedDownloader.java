@@ -0,0 +1,227 @@
+package com.qtech.forgemods.updates.download;
+
+import com.qtech.forgemods.updates.net.HttpClients;
+import com.qtech.forgemods.updates.net.HttpRequest;
+import com.qtech.forgemods.updates.net.HttpResponse;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Segmented (multi-connection) downloader.
+ * Splits a file in http {@code Range} segments, fetches them concurrently and writes them into a preallocated file at their offsets.
+ * Only usable if the server advertises {@code Accept-Ranges: bytes}, see {@link #probe(URL)}.
+ * A failed download reports the bytes that can be resumed from with a {@link SegmentedDownloadException}.
+ *
+ * @author Qboi123
+ */
+public class SegmentedDownloader {
+    /**
+     * Files smaller than two segments of this size are downloaded with a single stream.
+     */
+    public static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "QFMSegmentDownloader-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private final int segments;
+    private final int blockSize;
+
+    /**
+     * Segmented downloader: constructor.
+     *
+     * @param segments the maximum amount of segments (connections) per file.
+     * @param blockSize the amount of bytes to transfer between progress updates.
+     */
+    public SegmentedDownloader(int segments, int blockSize) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("Segment count must be at least 1.");
+        }
+        this.segments = segments;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Probe a download with a {@code HEAD} request.
+     *
+     * @param url the download url.
+     * @return the probe result, or null if the url isn't a http url.
+     * @throws IOException if the server couldn't be reached.
+     */
+    @Nullable
+    public static Probe probe(URL url) throws IOException {
+        if (!HttpClients.isHttp(url)) {
+            return null;
+        }
+
+        try (HttpResponse response = HttpClients.get().execute(HttpRequest.head(url).setAcceptGzip(false))) {
+            if (response.getStatus() != HttpURLConnection.HTTP_OK) {
+                return null;
+            }
+            return new Probe(
+                    response.getContentLength(),
+                    "bytes".equalsIgnoreCase(response.getHeader("Accept-Ranges")),
+                    response.getHeader("ETag"),
+                    response.getHeader("Last-Modified"));
+        }
+    }
+
+    /**
+     * Check if a file is worth splitting in segments.
+     *
+     * @param probe the probe result, as returned by {@link #probe(URL)}.
+     * @return true if the file should be downloaded segmented.
+     */
+    public boolean shouldSegment(@Nullable Probe probe) {
+        return probe != null && probe.acceptsRanges() && segments > 1 && probe.getSize() >= 2 * MIN_SEGMENT_SIZE;
+    }
+
+    /**
+     * Download a file in segments.
+     *
+     * @param url the download url.
+     * @param size the size of the file.
+     * @param offset the amount of bytes already downloaded at the start of the file, these are skipped.
+     * @param file the file to write to, will be preallocated to the file size.
+     * @param progress called with the total amount of bytes downloaded (including the offset), from the segment threads.
+     * @throws SegmentedDownloadException if a segment failed to download.
+     * @throws IOException if the file couldn't be opened.
+     */
+    public void download(URL url, long size, long offset, File file, LongConsumer progress) throws IOException {
+        long remaining = size - offset;
+        int count = (int) Math.max(1, Math.min(segments, remaining / MIN_SEGMENT_SIZE));
+        long segmentSize = remaining / count;
+
+        AtomicLong downloaded = new AtomicLong(offset);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        AtomicLong[] written = new AtomicLong[count];
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(size);
+            FileChannel channel = randomAccessFile.getChannel();
+
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long start = offset + i * segmentSize;
+                long end = i == count - 1 ? size - 1 : start + segmentSize - 1;
+                AtomicLong segmentWritten = new AtomicLong();
+                starts[i] = start;
+                ends[i] = end;
+                written[i] = segmentWritten;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        downloadSegment(url, start, end, channel, cancelled, read -> {
+                            segmentWritten.addAndGet(read);
+                            progress.accept(downloaded.addAndGet(read));
+                        });
+                    } catch (IOException | CancellationException e) {
+                        cancelled.set(true);
+                        throw new CompletionException(e);
+                    }
+                }, EXECUTOR));
+            }
+
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+
+                // Only the bytes up to the first incomplete segment can be resumed from.
+                long contiguous = offset;
+                for (int i = 0; i < count; i++) {
+                    long segmentWritten = written[i].get();
+                    contiguous += segmentWritten;
+                    if (starts[i] + segmentWritten <= ends[i]) {
+                        break;
+                    }
+                }
+                throw new SegmentedDownloadException("Segmented download failed: " + url, cause, contiguous);
+            }
+        }
+    }
+
+    private void downloadSegment(URL url, long start, long end, FileChannel channel, AtomicBoolean cancelled, LongConsumer progress) throws IOException {
+        HttpRequest request = HttpRequest.get(url).setAcceptGzip(false).setHeader("Range", "bytes=" + start + "-" + end);
+        try (HttpResponse response = HttpClients.get().execute(request)) {
+            if (response.getStatus() != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Server ignored range request for " + url + " (response code " + response.getStatus() + ")");
+            }
+
+            long length = end - start + 1;
+            long transferred = TransferEngine.transfer(response.getBody(), channel, start, length, blockSize, read -> {
+                if (cancelled.get()) {
+                    throw new CancellationException("Another segment failed.");
+                }
+                progress.accept(read);
+            });
+
+            long position = start + transferred;
+            if (position <= end) {
+                throw new IOException("Segment " + start + "-" + end + " of " + url + " ended early at " + position);
+            }
+        }
+    }
+
+    /**
+     * Result of a {@code HEAD} probe.
+     *
+     * @author Qboi123
+     */
+    public static class Probe {
+        private final long size;
+        private final boolean acceptsRanges;
+        private final String eTag;
+        private final String lastModified;
+
+        public Probe(long size, boolean acceptsRanges, @Nullable String eTag, @Nullable String lastModified) {
+            this.size = size;
+            this.acceptsRanges = acceptsRanges;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean acceptsRanges() {
+            return acceptsRanges;
+        }
+
+        @Nullable
+        public String getETag() {
+            return eTag;
+        }
+
+        @Nullable
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.qtech.forgemods.updates.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.LongConsumer;
+
+/**
+ * Transfers download streams into files with {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}.
+ * The channel reuses the JDK's cached temporary buffers, so nothing is allocated per block,
+ * and bytes go straight to the file channel without a per-block flush.
+ *
+ * @author Qboi123
+ */
+public final class TransferEngine {
+    /**
+     * Default amount of bytes to transfer between progress updates.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private TransferEngine() {
+        throw new UnsupportedOperationException("Not allowed to instantiate utility class.");
+    }
+
+    /**
+     * Transfer a stream into a file channel, at the given position.
+     *
+     * @param inputStream the stream to read from.
+     * @param channel the file channel to write to.
+     * @param position the position in the file to start writing at, at most the current file size.
+     * @param length the amount of bytes to transfer, or -1 if unknown (chunked responses), then the stream is read until its end.
+     * @param chunkSize the amount of bytes to transfer between progress updates.
+     * @param progress called with the amount of bytes transferred since the last call.
+     * @return the amount of bytes transferred.
+     * @throws IOException if reading or writing failed.
+     */
+    public static long transfer(InputStream inputStream, FileChannel channel, long position, long length, int chunkSize, LongConsumer progress) throws IOException {
+        return transfer(Channels.newChannel(inputStream), channel, position, length, chunkSize, progress);
+    }
+
+    /**
+     * Transfer a channel into a file channel, at the given position.
+     *
+     * @param source the channel to read from.
+     * @param channel the file channel to write to.
+     * @param position the position in the file to start writing at, at most the current file size.
+     * @param length the amount of bytes to transfer, or -1 if unknown, then the source is read until its end.
+     * @param chunkSize the amount of bytes to transfer between progress updates.
+     * @param progress called with the amount of bytes transferred since the last call.
+     * @return the amount of bytes transferred.
+     * @throws IOException if reading or writing failed.
+     */
+    public static long transfer(ReadableByteChannel source, FileChannel channel, long position, long length, int chunkSize, LongConsumer progress) throws IOException {
+        long transferred = 0;
+        while (length < 0 || transferred < length) {
+            long count = length < 0 ? chunkSize : Math.min(chunkSize, length - transferred);
+            long read = channel.transferFrom(source, position + transferred, count);
+            if (read <= 0) {
+                // End of stream.
+                break;
+            }
+
+            transferred += read;
+            progress.accept(read);
+        }
+        return transferred;
+    }
+}
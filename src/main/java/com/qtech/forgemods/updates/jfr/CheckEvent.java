@@ -0,0 +1,32 @@
+package com.qtech.forgemods.updates.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * An update check of a mod, or of a batch of mods.
+ *
+ * @author Qboi123
+ */
+@Name("com.qtech.forgemods.updates.Check")
+@Label("Update Check")
+@Category({"QTech Forge Mods", "Updates"})
+@Description("Update check of a mod, from fetching its manifest up to comparing the versions.")
+final class CheckEvent extends Event implements UpdateEvent {
+    @Label("Mod Id")
+    String modId;
+
+    @Label("Host")
+    String host;
+
+    @Label("Status")
+    String status;
+
+    @Override
+    public void setStatus(String status) {
+        this.status = status;
+    }
+}
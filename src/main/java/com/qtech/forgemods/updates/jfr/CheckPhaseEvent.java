@@ -0,0 +1,45 @@
+package com.qtech.forgemods.updates.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A phase of an update check: connect, read, parse or compare.
+ *
+ * @author Qboi123
+ */
+@Name("com.qtech.forgemods.updates.CheckPhase")
+@Label("Update Check Phase")
+@Category({"QTech Forge Mods", "Updates"})
+@Description("Connecting to the manifest host, reading, parsing the manifest, or comparing the versions.")
+final class CheckPhaseEvent extends Event implements UpdateEvent {
+    @Label("Phase")
+    String phase;
+
+    @Label("Mod Id")
+    String modId;
+
+    @Label("Host")
+    String host;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Status")
+    String status;
+
+    @Override
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public void setStatus(String status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,37 @@
+package com.qtech.forgemods.updates.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The resolution of the dependencies of one or more releases into a download plan.
+ *
+ * @author Qboi123
+ */
+@Name("com.qtech.forgemods.updates.DependencyResolution")
+@Label("Dependency Resolution")
+@Category({"QTech Forge Mods", "Updates"})
+@Description("Ordering releases and their dependencies into a download plan.")
+final class DependencyResolutionEvent extends Event implements UpdateEvent {
+    @Label("Roots")
+    int roots;
+
+    @Label("Resolved")
+    int resolved;
+
+    @Label("Status")
+    String status;
+
+    @Override
+    public void setCount(int count) {
+        this.resolved = count;
+    }
+
+    @Override
+    public void setStatus(String status) {
+        this.status = status;
+    }
+}
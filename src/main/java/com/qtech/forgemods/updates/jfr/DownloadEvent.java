@@ -0,0 +1,42 @@
+package com.qtech.forgemods.updates.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The download of an update file, including retries.
+ *
+ * @author Qboi123
+ */
+@Name("com.qtech.forgemods.updates.Download")
+@Label("Update Download")
+@Category({"QTech Forge Mods", "Updates"})
+@Description("Download of a release or dependency file, including retries.")
+final class DownloadEvent extends Event implements UpdateEvent {
+    @Label("Host")
+    String host;
+
+    @Label("File")
+    String file;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Status")
+    String status;
+
+    @Override
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public void setStatus(String status) {
+        this.status = status;
+    }
+}
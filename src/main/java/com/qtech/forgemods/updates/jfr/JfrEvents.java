@@ -0,0 +1,44 @@
+package com.qtech.forgemods.updates.jfr;
+
+/**
+ * Creates the Flight Recorder events, only loaded if Flight Recorder is available.
+ *
+ * @author Qboi123
+ */
+final class JfrEvents {
+    private JfrEvents() {
+        throw new UnsupportedOperationException("Not allowed to instantiate utility class.");
+    }
+
+    static UpdateEvent check(String modId, String host) {
+        CheckEvent event = new CheckEvent();
+        event.modId = modId;
+        event.host = host;
+        event.begin();
+        return event;
+    }
+
+    static UpdateEvent phase(String phase, String modId, String host) {
+        CheckPhaseEvent event = new CheckPhaseEvent();
+        event.phase = phase;
+        event.modId = modId;
+        event.host = host;
+        event.begin();
+        return event;
+    }
+
+    static UpdateEvent download(String host, String file) {
+        DownloadEvent event = new DownloadEvent();
+        event.host = host;
+        event.file = file;
+        event.begin();
+        return event;
+    }
+
+    static UpdateEvent resolution(int roots) {
+        DependencyResolutionEvent event = new DependencyResolutionEvent();
+        event.roots = roots;
+        event.begin();
+        return event;
+    }
+}
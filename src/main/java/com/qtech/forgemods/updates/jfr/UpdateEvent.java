@@ -0,0 +1,41 @@
+package com.qtech.forgemods.updates.jfr;
+
+/**
+ * A running update event, from {@link UpdateEvents}.
+ * Fields an event type doesn't have are ignored, and every method does nothing if Flight Recorder isn't available.
+ *
+ * @author Qboi123
+ */
+public interface UpdateEvent {
+    /**
+     * Event that doesn't record anything.
+     */
+    UpdateEvent NONE = () -> {
+    };
+
+    /**
+     * @param bytes the amount of bytes transferred or processed.
+     */
+    default void setBytes(long bytes) {
+
+    }
+
+    /**
+     * @param status the outcome, like the update status or the http response code.
+     */
+    default void setStatus(String status) {
+
+    }
+
+    /**
+     * @param count the amount of items processed.
+     */
+    default void setCount(int count) {
+
+    }
+
+    /**
+     * End the event, and record it if Flight Recorder is recording it.
+     */
+    void commit();
+}
@@ -0,0 +1,93 @@
+package com.qtech.forgemods.updates.jfr;
+
+import java.net.URL;
+
+/**
+ * Java Flight Recorder events of the updates module.
+ * Every update check records an {@code Update Check} event, with an {@code Update Check Phase} event for each phase
+ * (connect, read, parse, compare), so socket reads and stalls show up with the mod id and host that caused them.
+ * Downloads and dependency resolution record their own events.
+ * <p>
+ * Flight Recorder isn't part of every Java 8 runtime. Without it the events are never loaded, and beginning one returns {@link UpdateEvent#NONE}.
+ *
+ * @author Qboi123
+ */
+public final class UpdateEvents {
+    public static final String CONNECT = "connect";
+    public static final String READ = "read";
+    public static final String PARSE = "parse";
+    public static final String COMPARE = "compare";
+
+    private static final boolean AVAILABLE = isAvailable();
+    private static final ThreadLocal<String> CURRENT_MOD_ID = new ThreadLocal<>();
+
+    private UpdateEvents() {
+        throw new UnsupportedOperationException("Not allowed to instantiate utility class.");
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, UpdateEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Begin an update check.
+     * Phases begun on the same thread before {@link #endCheck(UpdateEvent, String)} are tagged with the mod id.
+     *
+     * @param modId the id of the checked mod, or the ids of a batch.
+     * @param url the (batch) manifest url.
+     * @return the check event.
+     */
+    public static UpdateEvent beginCheck(String modId, URL url) {
+        CURRENT_MOD_ID.set(modId);
+        return AVAILABLE ? JfrEvents.check(modId, url.getHost()) : UpdateEvent.NONE;
+    }
+
+    /**
+     * End an update check.
+     *
+     * @param event the check event.
+     * @param status the update status.
+     */
+    public static void endCheck(UpdateEvent event, String status) {
+        CURRENT_MOD_ID.remove();
+        event.setStatus(status);
+        event.commit();
+    }
+
+    /**
+     * Begin a phase of an update check.
+     *
+     * @param phase the phase, {@link #CONNECT}, {@link #READ}, {@link #PARSE} or {@link #COMPARE}.
+     * @param host the host of the manifest url.
+     * @return the phase event.
+     */
+    public static UpdateEvent beginPhase(String phase, String host) {
+        return AVAILABLE ? JfrEvents.phase(phase, CURRENT_MOD_ID.get(), host) : UpdateEvent.NONE;
+    }
+
+    /**
+     * Begin the download of a file.
+     *
+     * @param url the download url.
+     * @param file the name of the file downloaded to.
+     * @return the download event.
+     */
+    public static UpdateEvent beginDownload(URL url, String file) {
+        return AVAILABLE ? JfrEvents.download(url.getHost(), file) : UpdateEvent.NONE;
+    }
+
+    /**
+     * Begin a dependency resolution.
+     *
+     * @param roots the amount of mods to resolve the dependencies of.
+     * @return the resolution event.
+     */
+    public static UpdateEvent beginResolution(int roots) {
+        return AVAILABLE ? JfrEvents.resolution(roots) : UpdateEvent.NONE;
+    }
+}
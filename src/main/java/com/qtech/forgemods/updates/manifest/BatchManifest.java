@@ -0,0 +1,119 @@
+package com.qtech.forgemods.updates.manifest;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+
+import com.qtech.forgemods.updates.jfr.UpdateEvent;
+import com.qtech.forgemods.updates.jfr.UpdateEvents;
+import com.qtech.forgemods.updates.metrics.UpdateMetrics;
+import com.qtech.forgemods.updates.net.HttpClients;
+import com.qtech.forgemods.updates.net.HttpRequest;
+import com.qtech.forgemods.updates.net.HttpResponse;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Batch manifest requests, resolving the releases of many mods in a single request.
+ * A batch endpoint either serves one document keyed by mod id (fetched with a GET, through the {@link ManifestFetcher} and its cache),
+ * or answers a POST listing the mod ids and their current versions with such a document.
+ * The document format is described at {@link ManifestParser#parseBatch(Reader, String, String)}.
+ *
+ * @author Qboi123
+ */
+public final class BatchManifest {
+    private BatchManifest() {
+        throw new UnsupportedOperationException("Not allowed to instantiate utility class.");
+    }
+
+    /**
+     * Fetch a batch manifest with a GET request.
+     *
+     * @param url the batch manifest url.
+     * @param mcVersion the Minecraft version id.
+     * @param channel the release channel, {@code stable} or {@code unstable}.
+     * @return the read only release entries by mod id.
+     * @throws IOException if the batch manifest couldn't be fetched, isn't valid json, or contains a malformed url.
+     * @throws JsonParseException if a release entry is missing fields.
+     */
+    public static Map<String, ManifestRelease> get(URL url, String mcVersion, String channel) throws IOException {
+        ManifestCache.Entry entry = ManifestFetcher.get().fetch(url);
+        try {
+            return entry.getBatchReleases(mcVersion, channel);
+        } catch (IOException | IllegalStateException e) {
+            // Not valid json, fetch it without revalidating next time.
+            ManifestCache.get().invalidate(url);
+            throw e;
+        }
+    }
+
+    /**
+     * Request a batch manifest with a POST request.
+     * The request body is {@code {"mc_version": "<id>", "channel": "<channel>", "mods": {"<modId>": "<current version>", ...}}}.
+     *
+     * @param url the batch endpoint url.
+     * @param mcVersion the Minecraft version id.
+     * @param channel the release channel, {@code stable} or {@code unstable}.
+     * @param currentVersions the current version of every mod to check, by mod id.
+     * @return the release entries by mod id.
+     * @throws IOException if the request failed, or the response isn't valid json or contains a malformed url.
+     * @throws JsonParseException if a release entry is missing fields.
+     */
+    public static Map<String, ManifestRelease> post(URL url, String mcVersion, String channel, Map<String, String> currentVersions) throws IOException {
+        if (!HttpClients.isHttp(url)) {
+            throw new IOException("Batch endpoint " + url + " isn't an http url.");
+        }
+
+        StringWriter body = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(body)) {
+            writer.beginObject();
+            writer.name("mc_version").value(mcVersion);
+            writer.name("channel").value(channel);
+            writer.name("mods").beginObject();
+            for (Map.Entry<String, String> entry : currentVersions.entrySet()) {
+                writer.name(entry.getKey()).value(entry.getValue());
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+
+        HttpRequest request = new HttpRequest("POST", url)
+                .setBody(body.toString().getBytes(StandardCharsets.UTF_8), "application/json; charset=utf-8")
+                .setTimeout(ManifestCache.get().getTimeout());
+        long start = System.nanoTime();
+        // The phase that is running, committed exactly once: when it ends, or with the exception that ended it.
+        UpdateEvent phase = UpdateEvents.beginPhase(UpdateEvents.CONNECT, url.getHost());
+        try (HttpResponse response = HttpClients.get().execute(request)) {
+            phase.setStatus(Integer.toString(response.getStatus()));
+            phase.commit();
+            phase = null;
+            if (response.getStatus() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response code " + response.getStatus() + " for " + url);
+            }
+
+            // Parsed while reading, so the parse time is part of the fetch time, and the parse phase includes reading.
+            phase = UpdateEvents.beginPhase(UpdateEvents.PARSE, url.getHost());
+            Map<String, ManifestRelease> releases = ManifestParser.parseBatch(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8), mcVersion, channel);
+            phase.commit();
+            phase = null;
+            return releases;
+        } catch (IOException | RuntimeException e) {
+            if (phase != null) {
+                phase.setStatus(e.getClass().getSimpleName());
+                phase.commit();
+            }
+            if (e instanceof IOException) {
+                UpdateMetrics.get().counter("manifest.failures." + url.getHost()).increment();
+            }
+            throw e;
+        } finally {
+            UpdateMetrics.get().recordManifestFetch(url.getHost(), -1, System.nanoTime() - start);
+        }
+    }
+}
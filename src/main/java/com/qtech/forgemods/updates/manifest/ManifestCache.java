@@ -0,0 +1,364 @@
+package com.qtech.forgemods.updates.manifest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.qtech.forgemods.core.QFMCore;
+import com.qtech.forgemods.updates.jfr.UpdateEvent;
+import com.qtech.forgemods.updates.jfr.UpdateEvents;
+import com.qtech.forgemods.updates.metrics.UpdateMetrics;
+import com.qtech.forgemods.updates.net.HttpClients;
+import com.qtech.forgemods.updates.net.HttpRequest;
+import com.qtech.forgemods.updates.net.HttpResponse;
+import net.minecraftforge.fml.loading.FMLPaths;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache for update manifests.
+ * Stores the body, ETag and Last-Modified value of every fetched manifest under the game directory.
+ * Fetches send conditional requests, and on a {@code 304 Not Modified} the cached entry (including its parsed form) is reused.
+ * Bodies shorter or longer than their {@code Content-Length} are rejected instead of cached, and an entry that turns out not to parse
+ * should be {@link #invalidate(URL) invalidated}, otherwise it's revalidated and reused as long as the server's ETag doesn't change.
+ *
+ * @author Qboi123
+ */
+public class ManifestCache {
+    public static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private static final ManifestCache INSTANCE = new ManifestCache(FMLPaths.GAMEDIR.get().resolve("updates").resolve(".cache").resolve("manifests"));
+    private static final Gson GSON = new Gson();
+
+    private final Path directory;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile long timeout = DEFAULT_TIMEOUT;
+
+    /**
+     * Manifest cache: constructor.
+     *
+     * @param directory the directory to store the cached manifests in.
+     */
+    public ManifestCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the manifest cache used by the updaters.
+     *
+     * @return the manifest cache.
+     */
+    public static ManifestCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Fetch a manifest.
+     * Sends a conditional request if the manifest was fetched before, and reuses the cached entry if it wasn't modified.
+     *
+     * @param url the manifest url.
+     * @return the cache entry of the manifest.
+     * @throws IOException if the manifest couldn't be fetched.
+     */
+    public Entry fetch(URL url) throws IOException {
+        String key = url.toExternalForm();
+        Entry cached = getCached(key);
+
+        HttpRequest request = HttpRequest.get(url).setTimeout(timeout);
+        if (cached != null) {
+            request.setHeader("If-None-Match", cached.getETag());
+            request.setHeader("If-Modified-Since", cached.getLastModified());
+        }
+
+        long start = System.nanoTime();
+        long bytes = -1;
+        // The phase that is running, committed exactly once: when it ends, or with the exception that ended it.
+        UpdateEvent phase = UpdateEvents.beginPhase(UpdateEvents.CONNECT, url.getHost());
+        try (HttpResponse response = HttpClients.get().execute(request)) {
+            int status = response.getStatus();
+            phase.setStatus(Integer.toString(status));
+            phase.commit();
+            phase = null;
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                UpdateMetrics.get().counter("manifest.not_modified." + url.getHost()).increment();
+                return cached;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response code " + status + " for " + url);
+            }
+
+            // Non-http urls (e.g. a file url) have no validators, and aren't stored on disk.
+            phase = UpdateEvents.beginPhase(UpdateEvents.READ, url.getHost());
+            byte[] body = readBody(response.getBody());
+            bytes = body.length;
+            phase.setBytes(bytes);
+            long contentLength = response.getContentLength();
+            if (contentLength >= 0 && body.length != contentLength) {
+                throw new IOException("Manifest " + url + " has " + body.length + " bytes, expected " + contentLength + ".");
+            }
+            phase.commit();
+            phase = null;
+            return store(new Entry(key, new String(body, StandardCharsets.UTF_8), response.getHeader("ETag"), response.getHeader("Last-Modified")));
+        } catch (IOException e) {
+            if (phase != null) {
+                phase.setStatus(e.getClass().getSimpleName());
+                phase.commit();
+            }
+            UpdateMetrics.get().counter("manifest.failures." + url.getHost()).increment();
+            throw e;
+        } finally {
+            UpdateMetrics.get().recordManifestFetch(url.getHost(), bytes, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Remove the cached entry of an url, so the next fetch isn't conditional.
+     * Used when the cached manifest doesn't parse: a server (or proxy) that sent a broken body with a valid ETag
+     * would keep answering {@code 304 Not Modified} to it otherwise.
+     *
+     * @param url the manifest url.
+     */
+    public void invalidate(URL url) {
+        String key = url.toExternalForm();
+        entries.remove(key);
+        try {
+            Files.deleteIfExists(getFile(key));
+        } catch (IOException e) {
+            QFMCore.LOGGER.warn("Couldn't remove cached manifest for " + key + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the maximum time for a manifest request, including reading the body.
+     *
+     * @return the timeout in milliseconds.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Get the cached entry of an url, loads it from disk if it isn't in memory yet.
+     *
+     * @param key the manifest url, in external form.
+     * @return the cached entry, or null if there's none.
+     */
+    @Nullable
+    private Entry getCached(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            return entry;
+        }
+
+        Path file = getFile(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonObject json = GSON.fromJson(reader, JsonObject.class);
+            if (json == null || !key.equals(json.get("url").getAsString())) {
+                return null;
+            }
+            entry = new Entry(key, json.get("body").getAsString(), getString(json, "etag"), getString(json, "last_modified"));
+            Entry previous = entries.putIfAbsent(key, entry);
+            return previous != null ? previous : entry;
+        } catch (IOException | JsonParseException | IllegalStateException | NullPointerException e) {
+            QFMCore.LOGGER.warn("Couldn't read cached manifest for " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Entry store(Entry entry) {
+        entries.put(entry.getUrl(), entry);
+        if (entry.getETag() == null && entry.getLastModified() == null) {
+            // Can't be validated, so there's no use in keeping it on disk.
+            return entry;
+        }
+
+        JsonObject json = new JsonObject();
+        json.addProperty("url", entry.getUrl());
+        json.addProperty("etag", entry.getETag());
+        json.addProperty("last_modified", entry.getLastModified());
+        json.addProperty("body", entry.getBody());
+
+        try {
+            Files.createDirectories(directory);
+            Path file = getFile(entry.getUrl());
+            Path temp = Files.createTempFile(directory, "manifest", ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                GSON.toJson(json, writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            QFMCore.LOGGER.warn("Couldn't write cached manifest for " + entry.getUrl() + ": " + e.getMessage());
+        }
+        return entry;
+    }
+
+    private Path getFile(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return directory.resolve(name.append(".json").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Nullable
+    private static String getString(JsonObject json, String name) {
+        return json.has(name) && !json.get(name).isJsonNull() ? json.get(name).getAsString() : null;
+    }
+
+    private static byte[] readBody(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * A cached manifest.
+     *
+     * @author Qboi123
+     */
+    public static class Entry {
+        private final String url;
+        private final String body;
+        private final String eTag;
+        private final String lastModified;
+        private final Map<String, ManifestRelease> releases = new ConcurrentHashMap<>();
+        private final Map<String, Map<String, ManifestRelease>> batchReleases = new ConcurrentHashMap<>();
+
+        /**
+         * Manifest cache entry: constructor.
+         *
+         * @param url the manifest url.
+         * @param body the manifest body.
+         * @param eTag the ETag header of the response, or null.
+         * @param lastModified the Last-Modified header of the response, or null.
+         */
+        public Entry(String url, String body, @Nullable String eTag, @Nullable String lastModified) {
+            this.url = url;
+            this.body = body;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        @Nullable
+        public String getETag() {
+            return eTag;
+        }
+
+        @Nullable
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Get the release entry of a Minecraft version and channel.
+         * Every release entry is only parsed once per cache entry, also when several updaters share it, so an unmodified manifest is never parsed again.
+         *
+         * @param mcVersion the Minecraft version id.
+         * @param channel the release channel, {@code stable} or {@code unstable}.
+         * @return the release entry.
+         * @throws IOException if the manifest isn't valid json, or contains a malformed url.
+         * @throws JsonParseException if the manifest doesn't contain the release entry.
+         */
+        public ManifestRelease getRelease(String mcVersion, String channel) throws IOException {
+            String key = mcVersion + "/" + channel;
+            ManifestRelease release = releases.get(key);
+            if (release == null) {
+                synchronized (this) {
+                    release = releases.get(key);
+                    if (release == null) {
+                        long start = System.nanoTime();
+                        UpdateEvent event = beginParse();
+                        release = ManifestParser.parse(new StringReader(body), mcVersion, channel);
+                        event.commit();
+                        recordParse(start);
+                        releases.put(key, release);
+                    }
+                }
+            }
+            return release;
+        }
+
+        /**
+         * Get the release entries of a Minecraft version and channel, if this is a batch manifest.
+         * Parsed once per cache entry, like {@link #getRelease(String, String)}.
+         *
+         * @param mcVersion the Minecraft version id.
+         * @param channel the release channel, {@code stable} or {@code unstable}.
+         * @return the read only release entries by mod id.
+         * @throws IOException if the batch manifest isn't valid json, or contains a malformed url.
+         * @throws JsonParseException if a release entry is missing fields.
+         * @see ManifestParser#parseBatch(Reader, String, String)
+         */
+        public Map<String, ManifestRelease> getBatchReleases(String mcVersion, String channel) throws IOException {
+            String key = mcVersion + "/" + channel;
+            Map<String, ManifestRelease> batch = batchReleases.get(key);
+            if (batch == null) {
+                synchronized (this) {
+                    batch = batchReleases.get(key);
+                    if (batch == null) {
+                        long start = System.nanoTime();
+                        UpdateEvent event = beginParse();
+                        batch = Collections.unmodifiableMap(ManifestParser.parseBatch(new StringReader(body), mcVersion, channel));
+                        event.commit();
+                        recordParse(start);
+                        batchReleases.put(key, batch);
+                    }
+                }
+            }
+            return batch;
+        }
+
+        private UpdateEvent beginParse() throws MalformedURLException {
+            UpdateEvent event = UpdateEvents.beginPhase(UpdateEvents.PARSE, new URL(url).getHost());
+            event.setBytes(body.length());
+            return event;
+        }
+
+        private static void recordParse(long start) {
+            UpdateMetrics.get().histogram("manifest.parse", "us").record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+}
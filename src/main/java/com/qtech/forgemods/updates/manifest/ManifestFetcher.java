@@ -0,0 +1,121 @@
+package com.qtech.forgemods.updates.manifest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-flight manifest fetcher.
+ * Updaters sharing a manifest url share one fetch: concurrent requests wait for the fetch that's already running,
+ * and requests made shortly after it (in the same check cycle) get its result without touching the network.
+ *
+ * @author Qboi123
+ */
+public class ManifestFetcher {
+    private static final long SHARE_WINDOW = TimeUnit.SECONDS.toNanos(5);
+    private static final ManifestFetcher INSTANCE = new ManifestFetcher(ManifestCache.get());
+
+    private final ManifestCache cache;
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Manifest fetcher: constructor.
+     *
+     * @param cache the manifest cache to fetch through.
+     */
+    public ManifestFetcher(ManifestCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the manifest fetcher used by the updaters.
+     *
+     * @return the manifest fetcher.
+     */
+    public static ManifestFetcher get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Fetch a manifest, or join the fetch of it that's running or just finished.
+     *
+     * @param url the manifest url.
+     * @return the cache entry of the manifest.
+     * @throws IOException if the manifest couldn't be fetched.
+     */
+    public ManifestCache.Entry fetch(URL url) throws IOException {
+        // Key by external form, URL.equals() resolves host names.
+        String key = url.toExternalForm();
+
+        while (true) {
+            Flight flight = flights.get(key);
+            if (flight != null && flight.isShareable()) {
+                return flight.await();
+            }
+
+            Flight own = new Flight();
+            boolean claimed = flight == null ? flights.putIfAbsent(key, own) == null : flights.replace(key, flight, own);
+            if (!claimed) {
+                // Another thread started a fetch in the meantime, join that one.
+                continue;
+            }
+
+            try {
+                ManifestCache.Entry entry = cache.fetch(url);
+                own.complete(entry, null);
+                return entry;
+            } catch (Throwable e) {
+                // Also on errors, joined callers would wait forever otherwise.
+                own.complete(null, e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * A single fetch of a manifest.
+     */
+    private static class Flight {
+        private final CompletableFuture<ManifestCache.Entry> future = new CompletableFuture<>();
+        private volatile long completedAt;
+
+        void complete(ManifestCache.Entry entry, Throwable throwable) {
+            completedAt = System.nanoTime();
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+            } else {
+                future.complete(entry);
+            }
+        }
+
+        boolean isShareable() {
+            return !future.isDone() || System.nanoTime() - completedAt < SHARE_WINDOW;
+        }
+
+        ManifestCache.Entry await() throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for manifest fetch.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+}
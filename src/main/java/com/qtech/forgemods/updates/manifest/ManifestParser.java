@@ -0,0 +1,302 @@
+package com.qtech.forgemods.updates.manifest;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.qtech.forgemods.updates.Dependencies;
+import com.qtech.forgemods.updates.Dependency;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming update manifest parser.
+ * Only the release entry of one Minecraft version and channel is read ({@code mc_versions/<id>/<channel>}),
+ * the other versions and channels are skipped without building a json tree for them.
+ * Top level hints for the update checker are read as well:
+ * <ul>
+ *     <li>{@code check_interval}, {@code ttl} or {@code min_check_interval}: the minimum time between two checks, in seconds.
+ *     If more than one is given, the longest applies.</li>
+ *     <li>{@code rollout_spread}: the time to spread the roll out of a new release over, in seconds.</li>
+ * </ul>
+ *
+ * @author Qboi123
+ */
+public final class ManifestParser {
+    private static final Pattern SHA256 = Pattern.compile("^[0-9a-f]{64}$");
+
+    private ManifestParser() {
+        throw new UnsupportedOperationException("Not allowed to instantiate utility class.");
+    }
+
+    /**
+     * Parse the release entry of a Minecraft version and channel from a manifest.
+     *
+     * @param reader the manifest reader.
+     * @param mcVersion the Minecraft version id.
+     * @param channel the release channel, {@code stable} or {@code unstable}.
+     * @return the release entry.
+     * @throws IOException if the manifest couldn't be read, isn't valid json, or contains a malformed url.
+     * @throws JsonParseException if the manifest doesn't contain the release entry.
+     */
+    public static ManifestRelease parse(Reader reader, String mcVersion, String channel) throws IOException {
+        ManifestRelease release = readManifest(new JsonReader(reader), mcVersion, channel);
+        if (release == null) {
+            throw new JsonParseException("Manifest has no " + channel + " release for Minecraft " + mcVersion);
+        }
+        return release;
+    }
+
+    /**
+     * Parse the release entries of a Minecraft version and channel from a batch manifest.
+     * A batch manifest holds the manifests of several mods, keyed by mod id: {@code {"mods": {"<modId>": <manifest>, ...}}}.
+     * Top level hints ({@code check_interval} and {@code rollout_spread}, see above) apply to every mod manifest that doesn't have its own.
+     *
+     * @param reader the batch manifest reader.
+     * @param mcVersion the Minecraft version id.
+     * @param channel the release channel, {@code stable} or {@code unstable}.
+     * @return the release entries by mod id, mods without a release entry for the version and channel are left out.
+     * @throws IOException if the batch manifest couldn't be read, isn't valid json, or contains a malformed url.
+     * @throws JsonParseException if a release entry is missing fields.
+     */
+    public static Map<String, ManifestRelease> parseBatch(Reader reader, String mcVersion, String channel) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        Map<String, ManifestRelease> releases = new HashMap<>();
+        long checkInterval = -1;
+        long rolloutSpread = -1;
+
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String name = jsonReader.nextName();
+            if (name.equals("mods") && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                jsonReader.beginObject();
+                while (jsonReader.hasNext()) {
+                    String modId = jsonReader.nextName();
+                    if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+                        jsonReader.skipValue();
+                        continue;
+                    }
+                    ManifestRelease release = readManifest(jsonReader, mcVersion, channel);
+                    if (release != null) {
+                        releases.put(modId, release);
+                    }
+                }
+                jsonReader.endObject();
+            } else if (isCheckInterval(name)) {
+                checkInterval = Math.max(checkInterval, readLong(jsonReader));
+            } else if (name.equals("rollout_spread")) {
+                rolloutSpread = readLong(jsonReader);
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+
+        // The top level hints may come after the mods.
+        for (ManifestRelease release : releases.values()) {
+            if (release.getCheckInterval() < 0) {
+                release.setCheckInterval(checkInterval);
+            }
+            if (release.getRolloutSpread() < 0) {
+                release.setRolloutSpread(rolloutSpread);
+            }
+        }
+        return releases;
+    }
+
+    @Nullable
+    private static ManifestRelease readManifest(JsonReader reader, String mcVersion, String channel) throws IOException {
+        ManifestRelease release = null;
+        long checkInterval = -1;
+        long rolloutSpread = -1;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("mc_versions") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                release = readMcVersions(reader, mcVersion, channel);
+            } else if (isCheckInterval(name)) {
+                checkInterval = Math.max(checkInterval, readLong(reader));
+            } else if (name.equals("rollout_spread")) {
+                rolloutSpread = readLong(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (release != null) {
+            release.setCheckInterval(checkInterval);
+            release.setRolloutSpread(rolloutSpread);
+        }
+        return release;
+    }
+
+    private static boolean isCheckInterval(String name) {
+        return name.equals("check_interval") || name.equals("ttl") || name.equals("min_check_interval");
+    }
+
+    private static ManifestRelease readMcVersions(JsonReader reader, String mcVersion, String channel) throws IOException {
+        ManifestRelease release = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals(mcVersion) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals(channel) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        release = readRelease(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return release;
+    }
+
+    private static ManifestRelease readRelease(JsonReader reader) throws IOException {
+        String version = null;
+        String download = null;
+        String sha256 = null;
+        long size = -1;
+        Dependencies dependencies = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "version":
+                    version = reader.nextString();
+                    break;
+                case "download":
+                    download = reader.nextString();
+                    break;
+                case "sha256":
+                    sha256 = readSha256(reader);
+                    break;
+                case "size":
+                    size = readLong(reader);
+                    break;
+                case "dependencies":
+                    dependencies = readDependencies(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (version == null || download == null) {
+            throw new JsonParseException("Release entry is missing its version or download url.");
+        }
+        if (dependencies == null) {
+            dependencies = new Dependencies();
+            dependencies.lock();
+        }
+        return new ManifestRelease(version, new URL(download), dependencies, sha256, size);
+    }
+
+    /**
+     * Read an optional non-negative whole number, like a size or an interval.
+     *
+     * @param reader the json reader.
+     * @return the number, or -1 if the value isn't a non-negative whole number that fits in a long.
+     * @throws IOException if the value couldn't be read.
+     */
+    private static long readLong(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.NUMBER) {
+            reader.skipValue();
+            return -1;
+        }
+        try {
+            return Math.max(-1, reader.nextLong());
+        } catch (NumberFormatException e) {
+            // A fraction, or too large.
+            reader.skipValue();
+            return -1;
+        }
+    }
+
+    /**
+     * Read an optional SHA-256 hash, it's also used as a file name in the download cache.
+     *
+     * @param reader the json reader.
+     * @return the lowercase hex hash, or null if the value isn't a SHA-256 hash.
+     * @throws IOException if the value couldn't be read.
+     */
+    @Nullable
+    private static String readSha256(JsonReader reader) throws IOException {
+        String sha256 = reader.nextString().toLowerCase(Locale.ROOT);
+        return SHA256.matcher(sha256).matches() ? sha256 : null;
+    }
+
+    private static Dependencies readDependencies(JsonReader reader) throws IOException {
+        Dependencies dependencies = new Dependencies();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String modId = reader.nextName();
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+
+            String name = null;
+            String download = null;
+            String sha256 = null;
+            long size = -1;
+            Dependencies subDependencies = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name":
+                        name = reader.nextString();
+                        break;
+                    case "download":
+                        download = reader.nextString();
+                        break;
+                    case "sha256":
+                        sha256 = readSha256(reader);
+                        break;
+                    case "size":
+                        size = readLong(reader);
+                        break;
+                    case "dependencies":
+                        subDependencies = readDependencies(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if (name == null || download == null) {
+                throw new JsonParseException("Dependency " + modId + " is missing its name or download url.");
+            }
+            if (subDependencies == null) {
+                subDependencies = new Dependencies();
+                subDependencies.lock();
+            }
+            dependencies.add(new Dependency(modId, name, new URL(download), subDependencies, sha256, size));
+        }
+        reader.endObject();
+
+        dependencies.lock();
+        return dependencies;
+    }
+}
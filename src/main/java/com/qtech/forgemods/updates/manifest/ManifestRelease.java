@@ -0,0 +1,91 @@
+package com.qtech.forgemods.updates.manifest;
+
+import com.qtech.forgemods.updates.Dependencies;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URL;
+
+/**
+ * A release entry of an update manifest, for one Minecraft version and channel.
+ *
+ * @author Qboi123
+ */
+public class ManifestRelease {
+    private final String version;
+    private final URL download;
+    private final Dependencies dependencies;
+    private final String sha256;
+    private final long size;
+    private long checkInterval = -1;
+    private long rolloutSpread = -1;
+
+    /**
+     * Manifest release: constructor.
+     *
+     * @param version the unparsed version of the release.
+     * @param download the download url of the release.
+     * @param dependencies the (locked) dependencies of the release.
+     * @param sha256 the SHA-256 hash of the download, or null if not provided.
+     * @param size the size of the download, or -1 if not provided.
+     */
+    public ManifestRelease(String version, URL download, Dependencies dependencies, @Nullable String sha256, long size) {
+        this.version = version;
+        this.download = download;
+        this.dependencies = dependencies;
+        this.sha256 = sha256;
+        this.size = size;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public URL getDownload() {
+        return download;
+    }
+
+    public Dependencies getDependencies() {
+        return dependencies;
+    }
+
+    @Nullable
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the check interval, from the optional top level {@code check_interval}, {@code ttl} or {@code min_check_interval} manifest field.
+     *
+     * @return the minimum time between update checks in seconds, or -1 if the manifest doesn't provide it.
+     */
+    public long getCheckInterval() {
+        return checkInterval;
+    }
+
+    void setCheckInterval(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Get the rollout spread, from the optional top level {@code rollout_spread} manifest field.
+     * Clients pick a random moment within the spread to act on a new release, so they don't all download it at once.
+     *
+     * @return the rollout spread in seconds, or -1 if the manifest doesn't provide it.
+     */
+    public long getRolloutSpread() {
+        return rolloutSpread;
+    }
+
+    void setRolloutSpread(long rolloutSpread) {
+        this.rolloutSpread = rolloutSpread;
+    }
+
+    @Override
+    public String toString() {
+        return "ManifestRelease{version='" + version + "', download=" + download + ", dependencies=" + dependencies.size() + "}";
+    }
+}
@@ -0,0 +1,32 @@
+package com.qtech.forgemods.updates.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter, cheap to update from many threads at once.
+ *
+ * @author Qboi123
+ */
+public final class Counter {
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    void reset() {
+        value.reset();
+    }
+}
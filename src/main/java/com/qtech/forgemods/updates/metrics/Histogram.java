@@ -0,0 +1,176 @@
+package com.qtech.forgemods.updates.metrics;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram with power of two buckets, cheap to update from many threads at once.
+ * Recording a value is a few atomic increments without locking or allocation, so it can be used on hot paths.
+ * Percentiles are estimated within their bucket, so they're accurate to within a factor two; the maximum is exact.
+ *
+ * @author Qboi123
+ */
+public final class Histogram {
+    private static final int BUCKETS = 64;
+
+    private final String unit;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram(String unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value the value, negative values are recorded as 0.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+
+        long previous;
+        while (value > (previous = max.get())) {
+            if (max.compareAndSet(previous, value)) {
+                break;
+            }
+        }
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Take a snapshot of the recorded values.
+     * Values recorded while taking the snapshot may or may not be part of it.
+     *
+     * @return the snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long maximum = max.get();
+        return new Snapshot(unit, total, sum.sum(), maximum, percentile(counts, total, maximum, 0.5), percentile(counts, total, maximum, 0.9), percentile(counts, total, maximum, 0.99));
+    }
+
+    private static long percentile(long[] counts, long total, long maximum, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * quantile));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            if (seen + counts[i] >= rank) {
+                // Bucket 0 holds 0, bucket i holds [2^(i-1), 2^i).
+                if (i == 0) {
+                    return 0;
+                }
+                long lower = 1L << (i - 1);
+                long upper = i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                long estimate = lower + (long) ((upper - lower) * ((double) (rank - seen) / counts[i]));
+                return Math.min(estimate, maximum);
+            }
+            seen += counts[i];
+        }
+        return maximum;
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Point in time view of a histogram.
+     *
+     * @author Qboi123
+     */
+    public static final class Snapshot {
+        private final String unit;
+        private final long count;
+        private final long sum;
+        private final long max;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+
+        /**
+         * Histogram snapshot: constructor.
+         *
+         * @param unit the unit of the values.
+         * @param count the amount of recorded values.
+         * @param sum the sum of the recorded values.
+         * @param max the largest recorded value.
+         * @param p50 the estimated median.
+         * @param p90 the estimated 90th percentile.
+         * @param p99 the estimated 99th percentile.
+         */
+        @ConstructorProperties({"unit", "count", "sum", "max", "p50", "p90", "p99"})
+        public Snapshot(String unit, long count, long sum, long max, long p50, long p90, long p99) {
+            this.unit = unit;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getMean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + " mean=" + getMean() + unit + " p50=" + p50 + unit + " p90=" + p90 + unit + " p99=" + p99 + unit + " max=" + max + unit;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.qtech.forgemods.updates.metrics;
+
+import com.qtech.forgemods.core.QFMCore;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of update checks, manifest fetches and downloads.
+ * Counters and histograms are created on first use by name, names are dot separated and may end with a mod id or host,
+ * like {@code check.latency.<modId>} or {@code manifest.fetch.<host>}.
+ * The metrics are exposed as the {@value #OBJECT_NAME} MXBean, and summarized in the log periodically once {@link #start(long, TimeUnit) started}.
+ *
+ * @author Qboi123
+ */
+public class UpdateMetrics implements UpdateMetricsMXBean {
+    public static final String OBJECT_NAME = "com.qtech.forgemods:type=UpdateMetrics";
+    public static final long DEFAULT_SUMMARY_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    private static final UpdateMetrics INSTANCE = new UpdateMetrics();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private ScheduledExecutorService summaryExecutor;
+    private ScheduledFuture<?> summaryTask;
+    private String lastSummary;
+
+    /**
+     * Update metrics: constructor.
+     * Use {@link #get()} for the metrics of the updaters, separate instances aren't registered with JMX.
+     */
+    public UpdateMetrics() {
+
+    }
+
+    /**
+     * Get the metrics of the updaters.
+     *
+     * @return the update metrics.
+     */
+    public static UpdateMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get a counter, created if it doesn't exist yet.
+     *
+     * @param name the counter name.
+     * @return the counter.
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /**
+     * Get a histogram, created if it doesn't exist yet.
+     *
+     * @param name the histogram name.
+     * @param unit the unit of the values, only used when the histogram is created.
+     * @return the histogram.
+     */
+    public Histogram histogram(String name, String unit) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(unit));
+    }
+
+    /**
+     * Record the result of an update check.
+     *
+     * @param modId the id of the checked mod.
+     * @param status the name of the update status.
+     * @param nanos the duration of the check, in nanoseconds.
+     */
+    public void recordCheck(String modId, String status, long nanos) {
+        histogram("check.latency." + modId, "ms").record(TimeUnit.NANOSECONDS.toMillis(nanos));
+        counter("check.status." + status.toLowerCase(Locale.ROOT)).increment();
+    }
+
+    /**
+     * Record a manifest request.
+     *
+     * @param host the host of the manifest url.
+     * @param bytes the size of the response body, or -1 if there's none (not modified, or failed).
+     * @param nanos the duration of the request including reading the body, in nanoseconds.
+     */
+    public void recordManifestFetch(String host, long bytes, long nanos) {
+        histogram("manifest.fetch." + host, "ms").record(TimeUnit.NANOSECONDS.toMillis(nanos));
+        if (bytes >= 0) {
+            counter("manifest.bytes." + host).add(bytes);
+        }
+    }
+
+    /**
+     * Record a finished download.
+     *
+     * @param bytes the size of the downloaded file.
+     * @param nanos the duration of the download including retries, in nanoseconds.
+     */
+    public void recordDownload(long bytes, long nanos) {
+        counter("download.bytes").add(bytes);
+        histogram("download.duration", "ms").record(TimeUnit.NANOSECONDS.toMillis(nanos));
+        if (nanos > 0) {
+            histogram("download.throughput", "KiB/s").record((long) (bytes / 1024.0 / (nanos / 1e9)));
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    @Override
+    public Map<String, Histogram.Snapshot> getHistograms() {
+        Map<String, Histogram.Snapshot> snapshots = new TreeMap<>();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder("Update metrics:");
+        for (Map.Entry<String, Histogram.Snapshot> entry : getHistograms().entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                summary.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+            }
+        }
+        for (Map.Entry<String, Long> entry : getCounters().entrySet()) {
+            if (entry.getValue() > 0) {
+                summary.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+            }
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Register the MXBean, and start logging a summary periodically.
+     * The summary is only logged if something changed since the last one.
+     *
+     * @param interval the time between two summaries.
+     * @param unit the unit of the interval.
+     */
+    public synchronized void start(long interval, TimeUnit unit) {
+        registerMBean();
+        if (summaryTask != null) {
+            return;
+        }
+
+        if (summaryExecutor == null) {
+            summaryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "QFMUpdateMetrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        summaryTask = summaryExecutor.scheduleAtFixedRate(this::logSummary, interval, interval, unit);
+    }
+
+    /**
+     * Stop logging the summary, the MXBean stays registered.
+     */
+    public synchronized void stop() {
+        if (summaryTask != null) {
+            summaryTask.cancel(false);
+            summaryTask = null;
+        }
+    }
+
+    private void logSummary() {
+        String summary = getSummary();
+        if (!summary.equals(lastSummary)) {
+            lastSummary = summary;
+            QFMCore.LOGGER.info(summary);
+        }
+    }
+
+    private void registerMBean() {
+        if (this != INSTANCE) {
+            return;
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException | SecurityException e) {
+            QFMCore.LOGGER.warn("Couldn't register the update metrics MXBean: " + e.getMessage());
+        }
+    }
+}
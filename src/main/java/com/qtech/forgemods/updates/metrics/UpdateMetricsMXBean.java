@@ -0,0 +1,30 @@
+package com.qtech.forgemods.updates.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link UpdateMetrics update metrics}, registered as {@value UpdateMetrics#OBJECT_NAME}.
+ *
+ * @author Qboi123
+ */
+public interface UpdateMetricsMXBean {
+    /**
+     * @return the counter values by name.
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return the histogram snapshots by name.
+     */
+    Map<String, Histogram.Snapshot> getHistograms();
+
+    /**
+     * @return the summary, as written to the log.
+     */
+    String getSummary();
+
+    /**
+     * Reset all counters and histograms.
+     */
+    void reset();
+}
@@ -0,0 +1,201 @@
+package com.qtech.forgemods.updates.net;
+
+import com.qtech.forgemods.core.QFMCore;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Http client with a circuit breaker per host, around another client.
+ * After a number of consecutive failed requests (the host couldn't be reached) the circuit of the host opens,
+ * and requests to it fail right away with a {@link CircuitOpenException}, instead of each waiting for its own timeout.
+ * After a cool-down one request is let through as probe: if it succeeds the circuit closes again,
+ * if it fails the circuit stays open for a doubled cool-down.
+ * State changes are logged with a single line.
+ *
+ * @author Qboi123
+ */
+public class CircuitBreakingHttpClient implements HttpClient {
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final long DEFAULT_COOL_DOWN = TimeUnit.SECONDS.toMillis(30);
+    public static final long DEFAULT_MAX_COOL_DOWN = TimeUnit.MINUTES.toMillis(5);
+
+    private final HttpClient delegate;
+    private final int failureThreshold;
+    private final long coolDown;
+    private final long maxCoolDown;
+    private final LongSupplier clock;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    /**
+     * Circuit breaking http client: constructor.
+     * Uses the default threshold and cool-downs.
+     *
+     * @param delegate the client sending the requests.
+     */
+    public CircuitBreakingHttpClient(HttpClient delegate) {
+        this(delegate, DEFAULT_FAILURE_THRESHOLD, DEFAULT_COOL_DOWN, DEFAULT_MAX_COOL_DOWN, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    /**
+     * Circuit breaking http client: constructor.
+     *
+     * @param delegate the client sending the requests.
+     * @param failureThreshold the amount of consecutive failures that opens a circuit.
+     * @param coolDown the time a circuit stays open before the first probe, in milliseconds.
+     * @param maxCoolDown the maximum time a circuit stays open after failed probes, in milliseconds.
+     * @param clock the monotonic clock, in milliseconds.
+     */
+    public CircuitBreakingHttpClient(HttpClient delegate, int failureThreshold, long coolDown, long maxCoolDown, LongSupplier clock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be at least 1.");
+        }
+        this.delegate = delegate;
+        this.failureThreshold = failureThreshold;
+        this.coolDown = coolDown;
+        this.maxCoolDown = Math.max(coolDown, maxCoolDown);
+        this.clock = clock;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        if (!HttpClients.isHttp(request.getUrl())) {
+            return delegate.execute(request);
+        }
+
+        String host = request.getUrl().getAuthority();
+        Circuit circuit = circuits.computeIfAbsent(host, h -> new Circuit());
+        if (!circuit.tryAcquire(clock.getAsLong())) {
+            throw new CircuitOpenException("Host " + host + " is unreachable, not sending request to " + request.getUrl());
+        }
+
+        boolean settled = false;
+        try {
+            HttpResponse response = delegate.execute(request);
+
+            // Any response, also an error status, means the host is reachable.
+            settled = true;
+            if (circuit.onSuccess(coolDown) != State.CLOSED) {
+                QFMCore.LOGGER.info("Host " + host + " is reachable again.");
+            }
+            return response;
+        } catch (IOException e) {
+            State previous = circuit.onFailure(clock.getAsLong(), failureThreshold, coolDown, maxCoolDown);
+            settled = true;
+            if (previous == State.CLOSED && circuit.getState() == State.OPEN) {
+                QFMCore.LOGGER.warn("Host " + host + " is unreachable (" + e.getMessage() + "), pausing requests for " + TimeUnit.MILLISECONDS.toSeconds(circuit.getOpenFor()) + " seconds.");
+            } else if (previous == State.HALF_OPEN) {
+                QFMCore.LOGGER.debug("Host " + host + " is still unreachable, pausing requests for " + TimeUnit.MILLISECONDS.toSeconds(circuit.getOpenFor()) + " seconds.");
+            }
+            throw e;
+        } finally {
+            if (!settled) {
+                // Not an answer from the host either way (e.g. a runtime exception), a probe must not leave the circuit half open.
+                circuit.onAborted(clock.getAsLong());
+            }
+        }
+    }
+
+    /**
+     * Get the circuit state of a host.
+     *
+     * @param host the host, with the port if it isn't the default port.
+     * @return the circuit state, closed for unknown hosts.
+     */
+    public State getState(String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit == null ? State.CLOSED : circuit.getState();
+    }
+
+    public HttpClient getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Circuit state.
+     *
+     * @author Qboi123
+     */
+    public enum State {
+        /**
+         * Requests are sent.
+         */
+        CLOSED,
+        /**
+         * Requests fail right away.
+         */
+        OPEN,
+        /**
+         * A probe request is in flight, other requests fail right away.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Circuit of a single host.
+     */
+    private static class Circuit {
+        private State state = State.CLOSED;
+        private int failures;
+        private long openUntil;
+        private long openFor;
+        private long nextCoolDown = -1;
+
+        synchronized boolean tryAcquire(long now) {
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (now >= openUntil) {
+                        state = State.HALF_OPEN;
+                        return true;
+                    }
+                    return false;
+                default:
+                    return false;
+            }
+        }
+
+        synchronized State onSuccess(long coolDown) {
+            State previous = state;
+            state = State.CLOSED;
+            failures = 0;
+            nextCoolDown = coolDown;
+            return previous;
+        }
+
+        synchronized State onFailure(long now, int threshold, long coolDown, long maxCoolDown) {
+            State previous = state;
+            failures++;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= threshold)) {
+                if (nextCoolDown < 0) {
+                    nextCoolDown = coolDown;
+                }
+                openFor = nextCoolDown;
+                openUntil = now + openFor;
+                nextCoolDown = Math.min(maxCoolDown, nextCoolDown * 2);
+                state = State.OPEN;
+            }
+            return previous;
+        }
+
+        synchronized void onAborted(long now) {
+            if (state == State.HALF_OPEN) {
+                // Let the next request probe right away.
+                state = State.OPEN;
+                openUntil = now;
+            }
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+
+        synchronized long getOpenFor() {
+            return openFor;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.qtech.forgemods.updates.net;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request isn't sent, because the circuit of its host is open.
+ *
+ * @author Qboi123
+ * @see CircuitBreakingHttpClient
+ */
+public class CircuitOpenException extends IOException {
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.qtech.forgemods.updates.net;
+
+import java.io.IOException;
+
+/**
+ * Http client used for all update network traffic: manifest checks, probes and downloads.
+ * The client in use is set with {@link HttpClients#set(HttpClient)}, so it can be replaced by a stand-in.
+ *
+ * @author Qboi123
+ */
+public interface HttpClient {
+    /**
+     * Send a request.
+     * The response must be closed, also when it isn't read, so its connection can be reused.
+     *
+     * @param request the request.
+     * @return the response, for any status code.
+     * @throws IOException if the server couldn't be reached, or didn't respond in time.
+     */
+    HttpResponse execute(HttpRequest request) throws IOException;
+}
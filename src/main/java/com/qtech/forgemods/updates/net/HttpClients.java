@@ -0,0 +1,46 @@
+package com.qtech.forgemods.updates.net;
+
+import java.net.URL;
+
+/**
+ * Holder of the {@link HttpClient} in use.
+ * By default a {@link UrlConnectionHttpClient}, behind a {@link CircuitBreakingHttpClient} and a {@link RateLimitingHttpClient}.
+ * The rate limiter is outermost, so 429 responses count as reachable for the circuit breaker.
+ *
+ * @author Qboi123
+ */
+public final class HttpClients {
+    private static volatile HttpClient client = new RateLimitingHttpClient(new CircuitBreakingHttpClient(new UrlConnectionHttpClient()));
+
+    private HttpClients() {
+        throw new UnsupportedOperationException("Not allowed to instantiate utility class.");
+    }
+
+    /**
+     * Get the http client in use.
+     *
+     * @return the http client.
+     */
+    public static HttpClient get() {
+        return client;
+    }
+
+    /**
+     * Replace the http client, for example by a local stand-in.
+     *
+     * @param client the new http client.
+     */
+    public static void set(HttpClient client) {
+        HttpClients.client = client;
+    }
+
+    /**
+     * Check if an url is a http or https url.
+     *
+     * @param url the url.
+     * @return true for http and https urls.
+     */
+    public static boolean isHttp(URL url) {
+        return "http".equalsIgnoreCase(url.getProtocol()) || "https".equalsIgnoreCase(url.getProtocol());
+    }
+}
@@ -0,0 +1,122 @@
+package com.qtech.forgemods.updates.net;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Request for a {@link HttpClient}.
+ *
+ * @author Qboi123
+ */
+public class HttpRequest {
+    private final String method;
+    private final URL url;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private byte[] body;
+    private boolean acceptGzip = true;
+    private long timeout;
+
+    /**
+     * Http request: constructor.
+     *
+     * @param method the request method, like {@code GET} or {@code POST}.
+     * @param url the url.
+     */
+    public HttpRequest(String method, URL url) {
+        this.method = method;
+        this.url = url;
+    }
+
+    public static HttpRequest get(URL url) {
+        return new HttpRequest("GET", url);
+    }
+
+    public static HttpRequest head(URL url) {
+        return new HttpRequest("HEAD", url);
+    }
+
+    /**
+     * Set a request header.
+     *
+     * @param name the header name.
+     * @param value the header value, null leaves the header unset.
+     * @return this request.
+     */
+    public HttpRequest setHeader(String name, @Nullable String value) {
+        if (value != null) {
+            headers.put(name, value);
+        }
+        return this;
+    }
+
+    /**
+     * Set the request body.
+     *
+     * @param body the body.
+     * @param contentType the content type of the body.
+     * @return this request.
+     */
+    public HttpRequest setBody(byte[] body, String contentType) {
+        this.body = body;
+        return setHeader("Content-Type", contentType);
+    }
+
+    /**
+     * Set if the response may be gzip encoded.
+     * Should be disabled for downloads, byte ranges and lengths refer to the encoded body otherwise.
+     *
+     * @param acceptGzip true to accept a gzip encoded response, the default.
+     * @return this request.
+     */
+    public HttpRequest setAcceptGzip(boolean acceptGzip) {
+        this.acceptGzip = acceptGzip;
+        return this;
+    }
+
+    /**
+     * Set the maximum time for the whole request, from connecting until the body is read.
+     * The read timeout of the client only limits the time between two reads, so without this a server sending the body
+     * a byte at a time can keep a request going for as long as it likes.
+     *
+     * @param timeout the timeout in milliseconds, 0 for none (the default).
+     * @return this request.
+     */
+    public HttpRequest setTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    @Nullable
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    @Nullable
+    public byte[] getBody() {
+        return body;
+    }
+
+    public boolean isAcceptGzip() {
+        return acceptGzip;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,50 @@
+package com.qtech.forgemods.updates.net;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Response of a {@link HttpClient}.
+ * Closing the response closes its body, and hands the connection back for reuse.
+ *
+ * @author Qboi123
+ */
+public interface HttpResponse extends Closeable {
+    /**
+     * Get the status code.
+     *
+     * @return the status code, 200 for non-http urls that could be read.
+     */
+    int getStatus();
+
+    /**
+     * Get a response header.
+     *
+     * @param name the header name, case insensitive.
+     * @return the header value, or null if it isn't set.
+     */
+    @Nullable
+    String getHeader(String name);
+
+    /**
+     * Get the length of the body.
+     *
+     * @return the length in bytes, or -1 if unknown (chunked or decompressed).
+     */
+    long getContentLength();
+
+    /**
+     * Get the body, decompressed if the server sent it gzip encoded.
+     * For error status codes this is the error body.
+     *
+     * @return the body stream, closed with the response.
+     * @throws IOException if the body couldn't be opened.
+     */
+    InputStream getBody() throws IOException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,28 @@
+package com.qtech.forgemods.updates.net;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a host rate limits requests, either with a {@code 429 Too Many Requests} response,
+ * or because it asked to wait longer than a request may be delayed.
+ *
+ * @author Qboi123
+ * @see RateLimitingHttpClient
+ */
+public class RateLimitedException extends IOException {
+    private final long retryAfter;
+
+    public RateLimitedException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Get the time to wait before sending another request to the host.
+     *
+     * @return the delay in milliseconds.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,203 @@
+package com.qtech.forgemods.updates.net;
+
+import com.qtech.forgemods.core.QFMCore;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Http client with a token bucket rate limiter per host, around another client.
+ * Manifest checks and downloads share the bucket of their host, so requests are spread out instead of sent in bursts.
+ * The limiter also follows the host: a {@code 429 Too Many Requests} response with its {@code Retry-After} header,
+ * and {@code X-RateLimit-Remaining: 0} with {@code X-RateLimit-Reset} (epoch seconds), hold back requests to the host until the given time.
+ * Requests queue for a token of their host's bucket, so the local limit only delays requests and never fails them.
+ * Only the host's own limits fail requests: a 429 response, and holds longer than the maximum wait, throw a {@link RateLimitedException}.
+ *
+ * @author Qboi123
+ */
+public class RateLimitingHttpClient implements HttpClient {
+    public static final int DEFAULT_CAPACITY = 8;
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 2;
+    public static final long DEFAULT_MAX_WAIT = TimeUnit.SECONDS.toMillis(5);
+    public static final long DEFAULT_RETRY_AFTER = TimeUnit.SECONDS.toMillis(60);
+
+    private final HttpClient delegate;
+    private final int capacity;
+    private final double requestsPerMilli;
+    private final long maxWait;
+    private final LongSupplier clock;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Rate limiting http client: constructor.
+     * Uses the default bucket size, rate and maximum wait.
+     *
+     * @param delegate the client sending the requests.
+     */
+    public RateLimitingHttpClient(HttpClient delegate) {
+        this(delegate, DEFAULT_CAPACITY, DEFAULT_REQUESTS_PER_SECOND, DEFAULT_MAX_WAIT, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    /**
+     * Rate limiting http client: constructor.
+     *
+     * @param delegate the client sending the requests.
+     * @param capacity the bucket size, the amount of requests that can be sent in a burst.
+     * @param requestsPerSecond the rate the bucket refills with.
+     * @param maxWait the maximum time a request waits for a hold of the host to end, in milliseconds, longer holds fail right away.
+     * @param clock the monotonic clock, in milliseconds.
+     */
+    public RateLimitingHttpClient(HttpClient delegate, int capacity, double requestsPerSecond, long maxWait, LongSupplier clock) {
+        if (capacity < 1 || requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Capacity and rate must be positive.");
+        }
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.requestsPerMilli = requestsPerSecond / 1000;
+        this.maxWait = maxWait;
+        this.clock = clock;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        if (!HttpClients.isHttp(request.getUrl())) {
+            return delegate.execute(request);
+        }
+
+        String host = request.getUrl().getAuthority();
+        Bucket bucket = buckets.computeIfAbsent(host, h -> new Bucket(capacity, clock.getAsLong()));
+
+        long wait;
+        synchronized (bucket) {
+            long now = clock.getAsLong();
+            long heldFor = bucket.getHeldFor(now);
+            if (heldFor > maxWait) {
+                throw new RateLimitedException("Rate limited by " + host + ", retry in " + TimeUnit.MILLISECONDS.toSeconds(heldFor) + " seconds.", heldFor);
+            }
+            wait = bucket.reserve(now, capacity, requestsPerMilli);
+        }
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the rate limit of " + host);
+            }
+        }
+
+        HttpResponse response = delegate.execute(request);
+        long now = clock.getAsLong();
+        if (response.getStatus() == 429) {
+            long retryAfter = parseRetryAfter(response.getHeader("Retry-After"));
+            if (retryAfter < 0) {
+                retryAfter = DEFAULT_RETRY_AFTER;
+            }
+            response.close();
+            bucket.block(now + retryAfter);
+            QFMCore.LOGGER.warn("Rate limited by " + host + ", holding back requests for " + TimeUnit.MILLISECONDS.toSeconds(retryAfter) + " seconds.");
+            throw new RateLimitedException("Too many requests to " + host + ", retry in " + TimeUnit.MILLISECONDS.toSeconds(retryAfter) + " seconds.", retryAfter);
+        }
+
+        // Quota headers, as sent by GitHub among others.
+        if ("0".equals(response.getHeader("X-RateLimit-Remaining"))) {
+            String reset = response.getHeader("X-RateLimit-Reset");
+            if (reset != null) {
+                try {
+                    long delay = TimeUnit.SECONDS.toMillis(Long.parseLong(reset.trim())) - System.currentTimeMillis();
+                    if (delay > 0) {
+                        bucket.block(now + delay);
+                    }
+                } catch (NumberFormatException ignored) {
+                    // Not epoch seconds, nothing to go by.
+                }
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Parse a {@code Retry-After} header.
+     *
+     * @param value the header value, in seconds or as http date.
+     * @return the delay in milliseconds, or -1 if there's no (valid) header.
+     */
+    static long parseRetryAfter(@Nullable String value) {
+        if (value == null) {
+            return -1;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            try {
+                long date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return Math.max(0, date - System.currentTimeMillis());
+            } catch (DateTimeParseException e1) {
+                return -1;
+            }
+        }
+    }
+
+    public HttpClient getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Token bucket of a single host.
+     * While the host holds back requests the refill time lies in the future, and the bucket doesn't refill until then.
+     */
+    private static class Bucket {
+        private double tokens;
+        private long lastRefill;
+
+        Bucket(int capacity, long now) {
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        /**
+         * Reserve a token.
+         * Tokens can be reserved ahead (the bucket goes negative), later requests then wait longer.
+         *
+         * @return the time to wait before sending the request.
+         */
+        synchronized long reserve(long now, int capacity, double requestsPerMilli) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * requestsPerMilli);
+                lastRefill = now;
+            }
+
+            long wait = lastRefill - now;
+            if (tokens < 1) {
+                wait += (long) Math.ceil((1 - tokens) / requestsPerMilli);
+            }
+            tokens--;
+            return wait;
+        }
+
+        /**
+         * Get the time left of a hold by the host.
+         *
+         * @return the time until the host accepts requests again, 0 or less if it isn't holding back requests.
+         */
+        synchronized long getHeldFor(long now) {
+            return lastRefill - now;
+        }
+
+        /**
+         * Hold back requests until a time, then allow a single request before refilling.
+         */
+        synchronized void block(long until) {
+            lastRefill = Math.max(lastRefill, until);
+            tokens = Math.min(tokens, 1);
+        }
+    }
+}
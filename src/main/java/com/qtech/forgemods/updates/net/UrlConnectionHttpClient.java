@@ -0,0 +1,284 @@
+package com.qtech.forgemods.updates.net;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URLConnection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Default {@link HttpClient}, built on {@link HttpURLConnection}.
+ * Sets connect and read timeouts on every connection, so a hung server can't block a thread forever.
+ * Requests with a {@link HttpRequest#setTimeout(long) timeout} fail once it passed while reading the body, and their connection isn't reused.
+ * Connections are kept alive and reused by the JDK once a response is closed, and the amount of open connections per host is limited.
+ * Responses are requested gzip encoded where allowed, and decompressed transparently.
+ * Non-http urls (like file urls) are read directly, for {@code GET} requests only.
+ *
+ * @author Qboi123
+ */
+public class UrlConnectionHttpClient implements HttpClient {
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10_000;
+    public static final int DEFAULT_READ_TIMEOUT = 30_000;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int maxConnectionsPerHost;
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Url connection http client: constructor.
+     * Uses the default timeouts and connection limit.
+     */
+    public UrlConnectionHttpClient() {
+        this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_MAX_CONNECTIONS_PER_HOST);
+    }
+
+    /**
+     * Url connection http client: constructor.
+     *
+     * @param connectTimeout the connect timeout, in milliseconds.
+     * @param readTimeout the read timeout (the maximum time between two reads), in milliseconds.
+     * @param maxConnectionsPerHost the maximum amount of open connections per host.
+     */
+    public UrlConnectionHttpClient(int connectTimeout, int readTimeout, int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("Connection limit must be at least 1.");
+        }
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        long deadline = request.getTimeout() > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(request.getTimeout()) : 0;
+        URLConnection connection = request.getUrl().openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+
+        if (!(connection instanceof HttpURLConnection)) {
+            if (!request.getMethod().equals("GET")) {
+                throw new IOException("Can't send a " + request.getMethod() + " request to " + request.getUrl());
+            }
+            return new StreamResponse(connection.getInputStream(), connection.getContentLengthLong());
+        }
+
+        Semaphore permits = hosts.computeIfAbsent(request.getUrl().getAuthority(), host -> new Semaphore(maxConnectionsPerHost));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " + request.getUrl().getHost());
+        }
+
+        HttpURLConnection httpConnection = (HttpURLConnection) connection;
+        try {
+            httpConnection.setRequestMethod(request.getMethod());
+            for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+                httpConnection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            if (request.isAcceptGzip() && request.getHeader("Range") == null) {
+                httpConnection.setRequestProperty("Accept-Encoding", "gzip");
+            }
+
+            byte[] body = request.getBody();
+            if (body != null) {
+                httpConnection.setDoOutput(true);
+                httpConnection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream outputStream = httpConnection.getOutputStream()) {
+                    outputStream.write(body);
+                }
+            }
+
+            Response response = new Response(httpConnection, httpConnection.getResponseCode(), permits, request.getTimeout(), deadline);
+            response.checkDeadline();
+            return response;
+        } catch (IOException | RuntimeException e) {
+            httpConnection.disconnect();
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Response of a http connection, holds a connection permit of its host until closed.
+     */
+    private static class Response implements HttpResponse {
+        private final HttpURLConnection connection;
+        private final int status;
+        private final Semaphore permits;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final boolean gzip;
+        private final long timeout;
+        private final long deadline;
+        private volatile boolean expired;
+        private InputStream raw;
+        private InputStream body;
+
+        Response(HttpURLConnection connection, int status, Semaphore permits, long timeout, long deadline) {
+            this.connection = connection;
+            this.status = status;
+            this.permits = permits;
+            this.timeout = timeout;
+            this.deadline = deadline;
+            this.gzip = "gzip".equalsIgnoreCase(connection.getHeaderField("Content-Encoding"));
+        }
+
+        void checkDeadline() throws SocketTimeoutException {
+            if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                expired = true;
+                throw new SocketTimeoutException("Request to " + connection.getURL() + " took longer than " + timeout + " ms.");
+            }
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Nullable
+        @Override
+        public String getHeader(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public long getContentLength() {
+            return gzip ? -1 : connection.getContentLengthLong();
+        }
+
+        @Override
+        public synchronized InputStream getBody() throws IOException {
+            if (body == null) {
+                body = gzip && !connection.getRequestMethod().equals("HEAD") ? new GZIPInputStream(getRaw()) : getRaw();
+            }
+            return body;
+        }
+
+        private synchronized InputStream getRaw() throws IOException {
+            if (raw == null) {
+                raw = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+                if (raw == null) {
+                    raw = new ByteArrayInputStream(new byte[0]);
+                } else if (deadline != 0) {
+                    raw = new DeadlineInputStream(raw);
+                }
+            }
+            return raw;
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (expired) {
+                    // The rest of the body may never arrive, so the connection can't be reused.
+                    connection.disconnect();
+                } else {
+                    // Closing the body (even unread) hands the connection back to the keep-alive cache.
+                    getRaw().close();
+                }
+            } catch (IOException e) {
+                connection.disconnect();
+            } finally {
+                permits.release();
+            }
+        }
+
+        /**
+         * Body stream failing once the request timeout passed.
+         * Checked around every read, so it fails at most one read timeout after the deadline.
+         */
+        private class DeadlineInputStream extends FilterInputStream {
+            DeadlineInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                checkDeadline();
+                int b = super.read();
+                checkDeadline();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                checkDeadline();
+                int read = super.read(b, off, len);
+                checkDeadline();
+                return read;
+            }
+        }
+    }
+
+    /**
+     * Response of a non-http url.
+     */
+    private static class StreamResponse implements HttpResponse {
+        private final InputStream body;
+        private final long length;
+
+        StreamResponse(InputStream body, long length) {
+            this.body = body;
+            this.length = length;
+        }
+
+        @Override
+        public int getStatus() {
+            return HttpURLConnection.HTTP_OK;
+        }
+
+        @Nullable
+        @Override
+        public String getHeader(String name) {
+            return null;
+        }
+
+        @Override
+        public long getContentLength() {
+            return length;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                body.close();
+            } catch (IOException ignored) {
+                // Nothing to hand back.
+            }
+        }
+    }
+}